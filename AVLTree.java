@@ -1,10 +1,17 @@
 package dendrologist;
 
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.ArrayList;
 // DISCLAIMER: I DO NOT SUPPORT PEOPLE PLAGIARIZING OUR CODE. I DO NOT TAKE RESPONSIBILITY FOR THE UNLAWFUL ACTIONS OF OTHERS.
 /**
@@ -44,12 +51,81 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
      * The number of nodes in this tree
      */
     private int count;
+    /**
+     * The number of items in this tree besides the first with each key;
+     * always 0 unless this tree is a multiset
+     */
+    private int duplicates;
+    /**
+     * Whether items with equal keys are all kept instead of replacing
+     * one another
+     */
+    private boolean multiset;
     /**
      * A comparator lambda function that compares two elements of this
      * AVL tree; cmp.compare(x,y) gives 1. negative when x less than y
      * 2. positive when x greater than y 3. 0 when x equal y
      */
     private Comparator<? super E> cmp;
+    /**
+     * The comparator supplied to this tree; cmp wraps it while metrics are enabled
+     */
+    private Comparator<? super E> baseCmp;
+    /**
+     * An order-preserving summary of the key of an element, or null when
+     * not used; summary(x) less than summary(y) must imply that x is less
+     * than y under the comparator
+     */
+    private ToLongFunction<? super E> summary;
+    /**
+     * The start point of the interval an element represents, or null when
+     * this tree does not hold intervals
+     */
+    private ToLongFunction<? super E> intervalLow;
+    /**
+     * The end point of the interval an element represents, or null when
+     * this tree does not hold intervals
+     */
+    private ToLongFunction<? super E> intervalHigh;
+    /**
+     * The counters of the work done by this tree, or null when disabled
+     */
+    private AVLTreeMetrics metrics;
+    /**
+     * The number of ancestors retraced by the write in progress
+     */
+    private int retrace;
+    /**
+     * Whether the invariants of this tree are validated after each mutation
+     */
+    private boolean debug;
+    /**
+     * The number of mutations of this tree, used to detect stale fingers
+     */
+    private int modCount;
+    /**
+     * An upper bound on the number of nodes on a path from the root; an AVL
+     * tree with 2^31 nodes is less than 46 levels high
+     */
+    private static final int MAX_DEPTH = 64;
+    /**
+     * How many levels deeper than an AVL tree of the same size a relaxed
+     * tree may grow before it is settled
+     */
+    private static final int RELAXED_SLACK = 8;
+    /**
+     * Whether insertions defer their rebalancing
+     */
+    private boolean relaxed;
+    /**
+     * The leaves attached by relaxed insertions and not yet rebalanced, in
+     * insertion order; a pending leaf has no balance factor
+     */
+    private final ArrayDeque<Node> pending = new ArrayDeque<>();
+    /**
+     * The path from the root to the node being rebalanced
+     */
+    private Node[] trail;
 
     /**
      * A node of a tree stores a data item and references
@@ -72,6 +148,78 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
          * the balanced factor of this node
          */
         BalancedFactor bal;
+
+        /**
+         * Moves the items of another node into this one, as a deletion
+         * does when a node takes the place of its predecessor
+         *
+         * @param other a node of the same class
+         */
+        void take(Node other) {
+            data = other.data;
+        }
+    }
+
+    /**
+     * A node of a tree with key summaries, which also caches the summary
+     * of its data. The nodes of a plain tree leave it out.
+     */
+    private class SummaryNode extends Node {
+        /**
+         * the key summary of the data in this node
+         */
+        long sum;
+
+        @Override
+        void take(Node other) {
+            super.take(other);
+            sum = ((SummaryNode) other).sum;
+        }
+    }
+
+    /**
+     * A node of a multiset, which also holds the later occurrences of the
+     * key of its data
+     */
+    private class MultisetNode extends SummaryNode {
+        /**
+         * the items with the same key inserted after the data in this node,
+         * in insertion order
+         */
+        Object[] dups;
+        /**
+         * the number of items in dups
+         */
+        int dupCount;
+
+        @Override
+        void take(Node other) {
+            super.take(other);
+            dups = ((MultisetNode) other).dups;
+            dupCount = ((MultisetNode) other).dupCount;
+        }
+
+        /**
+         * Gives a duplicate kept in this node
+         *
+         * @param i the index of the duplicate in dups
+         * @return the duplicate
+         */
+        @SuppressWarnings("unchecked") // dups holds only items of type E, stored by append
+        E dup(int i) {
+            return (E) dups[i];
+        }
+    }
+
+    /**
+     * A node of a tree of intervals, which also keeps the largest interval
+     * end point in the subtree rooted at it
+     */
+    private class IntervalNode extends Node {
+        /**
+         * the largest interval end point in the subtree rooted at this node
+         */
+        long max;
     }
 
     /**
@@ -81,6 +229,7 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
         root = null;
         count = 0;
         cmp = (x, y) -> x.compareTo(y);
+        baseCmp = cmp;
     }
 
     /**
@@ -92,8 +241,41 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
         root = null;
         count = 0;
         cmp = fn;
+        baseCmp = fn;
     }
 
+    /**
+     * A parameterized constructor that uses an externally defined comparator
+     * and caches an order-preserving summary of each key in its node. A
+     * search compares summaries first and calls the comparator only when
+     * they are equal, so a summary that separates most keys saves most
+     * comparator calls.
+     *
+     * @param fn  - a trichotomous integer value comparator function
+     * @param key - an order-preserving key summary: key(x) &lt; key(y)
+     *            implies fn.compare(x, y) &lt; 0
+     */
+    public AVLTree(Comparator<? super E> fn, ToLongFunction<? super E> key) {
+        this(fn);
+        summary = key;
+    }
+
+
+    /**
+     * Constructs an empty tree of intervals that keeps the largest end
+     * point of each subtree in its root, for overlap queries
+     *
+     * @param fn   - a trichotomous integer value comparator function that
+     *             orders intervals by start point first
+     * @param low  - gives the start point of the interval of an element
+     * @param high - gives the end point of the interval of an element
+     * @see IntervalTree
+     */
+    AVLTree(Comparator<? super E> fn, ToLongFunction<? super E> low, ToLongFunction<? super E> high) {
+        this(fn);
+        intervalLow = low;
+        intervalHigh = high;
+    }
 
     @Override
     public boolean isEmpty() {
@@ -102,41 +284,26 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
 
     @Override
     public void insert(E obj) {
-        Node newNode = new Node();
+        Node newNode = newNode(obj, summary == null ? 0 : summary.applyAsLong(obj));
         newNode.bal = BalancedFactor.EH;
-        newNode.data = obj;
+        fix(newNode);
+        if (relaxed) {
+            insertRelaxed(newNode);
+            return;
+        }
         AtomicBoolean forTaller = new AtomicBoolean();
-        if (!inTree(obj))
-            count++;
+        retrace = 0;
+        modCount++;
         root = insert(root, newNode, forTaller);
-
+        if (metrics != null)
+            metrics.write(retrace);
+        if (debug)
+            check();
     }
 
     @Override
     public boolean inTree(E item) {
-        Node tmp;
-        if (isEmpty())
-            return false;
-        /*find where it is */
-        tmp = root;
-        while (true) {
-            int d = cmp.compare(tmp.data, item);
-            if (d == 0)
-                return true;
-            else if (d > 0) {
-                if (tmp.left == null)
-                    return false;
-                else
-                    /* continue searching */
-                    tmp = tmp.left;
-            } else {
-                if (tmp.right == null)
-                    return false;
-                else
-                    /* continue searching for insertion pt. */
-                    tmp = tmp.right;
-            }
-        }
+        return search(item, true) != null;
     }
 
     @Override
@@ -144,49 +311,608 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
         AtomicBoolean shorter = new AtomicBoolean();
         AtomicBoolean success = new AtomicBoolean();
         Node newRoot;
-        if (!inTree(item))
+        Node node = search(item, false);
+        if (node == null)
             return;
-        newRoot = remove(root, item, shorter, success);
+        if (!pending.isEmpty())
+            settle();
+        modCount++;
+        if (dupCount(node) > 0) {
+            /* one of several occurrences: the node stays */
+            drop(node, item);
+            if (debug)
+                check();
+            return;
+        }
+        retrace = 0;
+        newRoot = remove(root, item, summary == null ? 0 : summary.applyAsLong(item), shorter, success);
         if (success.get()) {
             root = newRoot;
             count--;
         }
+        if (metrics != null)
+            metrics.write(retrace);
+        if (debug)
+            check();
     }
 
     @Override
     public E retrieve(E item) throws AVLTreeException {
-        Node tmp;
         if (isEmpty())
             throw new AVLTreeException("AVL Tree Exception: tree empty on call to retrieve()");
-        /*find where it is */
-        tmp = root;
-        while (true) {
-            int d = cmp.compare(tmp.data, item);
+        Node tmp = search(item, true);
+        if (tmp == null)
+            throw new AVLTreeException("AVL Tree Exception: key not in tree call to retrieve()");
+        return tmp.data;
+    }
+
+    public void traverse(Function func) {
+        traverse(root, func);
+    }
+
+    @Override
+    public int size() {
+        return count + duplicates;
+    }
+
+    /**
+     * Gives the number of occurrences of a key. Unless this tree is a
+     * multiset, a key occurs at most once.
+     *
+     * @param key item with a specified search key
+     * @return the number of items in this tree with the key
+     */
+    public int count(E key) {
+        Node node = search(key, true);
+        return node == null ? 0 : 1 + dupCount(node);
+    }
+
+    /**
+     * Turns this tree into a multiset, or back. In a multiset an item whose
+     * key is already in the tree joins the items in the node holding the
+     * key instead of replacing them, so the height of the tree depends only
+     * on the number of distinct keys. Removing a key removes one occurrence:
+     * the item equal to the specified one if there is one, otherwise the
+     * item most recently inserted. Traversal visits every occurrence, in
+     * insertion order among equal keys.
+     *
+     * @param on true for a multiset; otherwise, false
+     * @throws IllegalStateException when the tree is not empty
+     */
+    public void setMultiset(boolean on) {
+        if (!isEmpty())
+            throw new IllegalStateException("AVL Tree Error: multiset mode changed on a non-empty tree");
+        multiset = on;
+    }
+
+    /**
+     * Turns relaxed balancing on or off. A relaxed insertion attaches the
+     * new leaf without retracing its ancestors and leaves it pending;
+     * rebalance and settle retrace pending leaves later, in insertion
+     * order. If a new leaf lies more than a few levels deeper than any
+     * leaf of an AVL tree of the same size could, the tree settles at
+     * once, which bounds how far its height may drift. Searches work as
+     * usual on an unsettled tree; removals, computations, finger
+     * insertions and the augmented methods settle the tree first, so the
+     * shape they see is strictly AVL. Turning relaxed balancing off
+     * settles the tree.
+     *
+     * @param on true to defer rebalancing; otherwise, false
+     */
+    public void setRelaxed(boolean on) {
+        if (!on)
+            settle();
+        relaxed = on;
+    }
+
+    /**
+     * Retraces at most the specified number of pending leaves, oldest
+     * first, so that a relaxed tree can be rebalanced a little at a time.
+     *
+     * @param steps the largest number of leaves to retrace
+     * @return the number of leaves still pending
+     */
+    public int rebalance(int steps) {
+        if (steps > 0 && !pending.isEmpty()) {
+            modCount++;
+            for (int i = 0; i < steps && !pending.isEmpty(); i++) {
+                retrace = 0;
+                retrace(pending.poll());
+                if (metrics != null)
+                    metrics.write(retrace);
+            }
+            if (debug)
+                check();
+        }
+        return pending.size();
+    }
+
+    /**
+     * Rebalances every pending leaf, restoring the strict AVL shape. When
+     * many leaves are pending the tree is rebuilt in O(n) time instead of
+     * retracing them one by one.
+     */
+    public void settle() {
+        int k = pending.size();
+        if (k == 0)
+            return;
+        /* k retraces cost about k log n; a rebuild costs n */
+        if ((long) k * (32 - Integer.numberOfLeadingZeros(count)) > count) {
+            Node[] nodes = newNodes(count);
+            flatten(root, nodes, 0);
+            root = link(nodes, 0, count);
+            /* the pending insertions are complete, with no ancestor retraced */
+            for (int i = 0; i < k && metrics != null; i++)
+                metrics.write(0);
+            pending.clear();
+            modCount++;
+            if (debug)
+                check();
+        } else {
+            rebalance(k);
+        }
+    }
+
+    /**
+     * Replaces the contents of this tree with the specified items in O(n)
+     * time by linking them into a balanced tree instead of inserting them
+     * one at a time.
+     *
+     * @param sorted the items in strictly increasing order under the
+     *               comparator, or in non-decreasing order in a multiset
+     * @throws IllegalArgumentException when the items are not in order
+     */
+    public void load(List<? extends E> sorted) {
+        int n = sorted.size();
+        Node[] nodes = newNodes(n);
+        int m = 0;
+        E prev = null;
+        for (int i = 0; i < n; i++) {
+            E item = sorted.get(i);
+            int d = i == 0 ? -1 : cmp.compare(prev, item);
+            if (d > 0 || (d == 0 && !multiset))
+                throw new IllegalArgumentException("items not in strictly increasing order at index " + i);
+            if (d == 0) {
+                append(nodes[m - 1], item);
+                continue;
+            }
+            nodes[m++] = newNode(item, summary == null ? 0 : summary.applyAsLong(item));
+            prev = item;
+        }
+        root = link(nodes, 0, m);
+        pending.clear();
+        count = m;
+        duplicates = n - m;
+        modCount++;
+        if (debug)
+            check();
+    }
+
+    /**
+     * Finds the item whose key, as extracted by keyOf, equals the specified
+     * key under keyCmp, without building a probe item. keyCmp applied to
+     * extracted keys must order the items as the comparator of this tree does.
+     *
+     * @param <K>    the data type of the key
+     * @param key    the key to be found
+     * @param keyOf  extracts the key of an item
+     * @param keyCmp a trichotomous integer value comparator of keys
+     * @return the item with the key, or null if it is not in the tree
+     */
+    public <K> E find(K key, Function<? super E, ? extends K> keyOf, Comparator<? super K> keyCmp) {
+        Node tmp = root;
+        int depth = 0;
+        while (tmp != null) {
+            depth++;
+            int d = keyCmp.compare(key, keyOf.apply(tmp.data));
             if (d == 0)
-                return tmp.data;
-            else if (d > 0) {
-                if (tmp.left == null)
-                    throw new AVLTreeException("AVL Tree Exception: key not in tree call to retrieve()");
-                else
-                    /* continue searching */
-                    tmp = tmp.left;
+                break;
+            else if (d < 0)
+                tmp = tmp.left;
+            else
+                tmp = tmp.right;
+        }
+        if (metrics != null) {
+            /* keyCmp bypasses the counting comparator; one call per node visited */
+            metrics.comparisons(depth);
+            metrics.search(depth);
+        }
+        return tmp == null ? null : tmp.data;
+    }
+
+    /**
+     * Gives the smallest item in this tree.
+     *
+     * @return the smallest item, or null if the tree is empty
+     */
+    public E min() {
+        Node tmp = root;
+        if (tmp == null)
+            return null;
+        while (tmp.left != null)
+            tmp = tmp.left;
+        return tmp.data;
+    }
+
+    /**
+     * Gives the largest item in this tree.
+     *
+     * @return the largest item, or null if the tree is empty
+     */
+    public E max() {
+        Node tmp = root;
+        if (tmp == null)
+            return null;
+        while (tmp.right != null)
+            tmp = tmp.right;
+        return tmp.data;
+    }
+
+    /**
+     * Computes a new item for the specified key from the item currently
+     * holding it, in a single descent of the tree. The function receives
+     * the key and the current item, or null if there is none; a non-null
+     * result replaces the current item or is inserted, and a null result
+     * removes the current item. In a multiset the current item is the first
+     * occurrence of the key and a null result removes only that occurrence.
+     * A replacement or inserted item must have
+     * the specified key. keyCmp applied to extracted keys must order the
+     * items as the comparator of this tree does.
+     *
+     * @param <K>    the data type of the key
+     * @param key    the key of the item to be computed
+     * @param keyOf  extracts the key of an item
+     * @param keyCmp a trichotomous integer value comparator of keys
+     * @param fn     computes the new item from the key and the current item
+     * @return the new item, or null if there is none
+     */
+    public <K> E compute(K key, Function<? super E, ? extends K> keyOf, Comparator<? super K> keyCmp,
+                         BiFunction<? super K, ? super E, ? extends E> fn) {
+        AtomicBoolean taller = new AtomicBoolean();
+        AtomicBoolean shorter = new AtomicBoolean();
+        Object[] result = new Object[1];
+        if (!pending.isEmpty())
+            settle();
+        retrace = 0;
+        modCount++;
+        root = compute(root, key, keyOf, keyCmp, fn, taller, shorter, result);
+        if (metrics != null)
+            metrics.write(retrace);
+        if (debug)
+            check();
+        @SuppressWarnings("unchecked") // the recursion stores only the computed item, an E, in result
+        E item = (E) result[0];
+        return item;
+    }
+
+    /**
+     * Creates a finger on this tree: a cursor that remembers the position
+     * of its last search or insertion and starts the next one from there.
+     *
+     * @return a finger positioned at the root
+     */
+    public Finger finger() {
+        return new Finger();
+    }
+
+    /**
+     * A cursor that searches and inserts starting from the position of its
+     * previous operation. It keeps the path from the root to that position
+     * along with the range of keys each node on the path spans. A new key
+     * is first compared with the node at the current position, which tells
+     * on which side of the range it may lie; the finger then climbs while
+     * the key lies beyond the bound on that side, comparing once per
+     * distinct bound, and descends from the nearest ancestor whose range
+     * holds the key. A sorted or nearly sorted stream of keys costs O(1)
+     * amortized comparisons per key. The cost does not depend on the
+     * distance between keys alone: two neighbouring keys on either side of
+     * a high ancestor need a climb to that ancestor, at worst about twice
+     * the comparisons of a search from the root. Any mutation of the tree
+     * made other than through this finger sends it back to the root.
+     */
+    public class Finger {
+        /**
+         * the nodes from the root to the current position
+         */
+        private final Node[] path = newNodes(MAX_DEPTH);
+        /**
+         * the nearest ancestor each node on the path lies to the right of
+         */
+        private final Node[] lo = newNodes(MAX_DEPTH);
+        /**
+         * the nearest ancestor each node on the path lies to the left of
+         */
+        private final Node[] hi = newNodes(MAX_DEPTH);
+        /**
+         * indicates whether a subtree becomes taller during an insertion
+         */
+        private final AtomicBoolean taller = new AtomicBoolean();
+        /**
+         * the number of nodes on the path
+         */
+        private int depth;
+        /**
+         * the result of the last comparison made by locate
+         */
+        private int side;
+        /**
+         * the number of nodes visited by the last call to locate
+         */
+        private int visited;
+        /**
+         * the mutation count of the tree when the path was recorded
+         */
+        private int expectedModCount;
+
+        private Finger() {
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Determine whether an item is in the tree, moving this finger to
+         * the item or to where it would be inserted.
+         *
+         * @param item item with a specified search key.
+         * @return true on success; false on failure.
+         */
+        public boolean inTree(E item) {
+            Node node = locate(item, summary == null ? 0 : summary.applyAsLong(item));
+            if (metrics != null)
+                metrics.search(visited);
+            return node != null;
+        }
+
+        /**
+         * Inserts an item into the tree, starting from the position of this
+         * finger, and moves this finger to the item.
+         *
+         * @param obj the value to be inserted.
+         */
+        public void insert(E obj) {
+            if (!pending.isEmpty())
+                settle();
+            long sum = summary == null ? 0 : summary.applyAsLong(obj);
+            Node node = locate(obj, sum);
+            if (node != null && multiset) {
+                append(node, obj);
+                duplicates++;
+                return;
+            }
+            if (node != null) {
+                store(node, obj, sum);
+                for (int i = depth - 1; i >= 0 && intervalHigh != null; i--)
+                    fix(path[i]);
+                return;
+            }
+            Node newNode = newNode(obj, sum);
+            newNode.bal = BalancedFactor.EH;
+            count++;
+            modCount++;
+            expectedModCount = modCount;
+            retrace = 0;
+            if (depth == 0) {
+                root = newNode;
+                fix(newNode);
+                push(newNode, side);
             } else {
-                if (tmp.right == null)
-                    throw new AVLTreeException("AVL Tree Exception: key not in tree call to retrieve()");
+                Node parent = path[depth - 1];
+                if (side < 0)
+                    parent.left = newNode;
                 else
-                    /* continue searching for insertion pt. */
-                    tmp = tmp.right;
+                    parent.right = newNode;
+                fix(newNode);
+                for (int i = depth - 1; i >= 0 && intervalHigh != null; i--)
+                    fix(path[i]);
+                int rotated = retrace(newNode);
+                if (rotated < 0) {
+                    push(newNode, side);
+                } else {
+                    /* the path below a rotation no longer leads to the new node */
+                    depth = rotated;
+                    locate(obj, sum);
+                }
+            }
+            if (metrics != null)
+                metrics.write(retrace);
+            if (debug)
+                check();
+        }
+
+        /**
+         * Moves this finger back to the root.
+         */
+        public void reset() {
+            depth = 0;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * An auxiliary method that moves this finger to the node holding the
+         * specified key or, if there is none, to the node below which it
+         * would be inserted
+         *
+         * @param item item with a specified search key
+         * @param sum  the key summary of the item, ignored without summaries
+         * @return the node holding the key, or null if it is not in the tree
+         */
+        private Node locate(E item, long sum) {
+            if (expectedModCount != modCount || (depth > 0 && path[0] != root))
+                reset();
+            visited = 0;
+            if (depth == 0) {
+                if (root == null)
+                    return null;
+                path[0] = root;
+                lo[0] = null;
+                hi[0] = null;
+                depth = 1;
+            }
+            Node tmp = path[depth - 1];
+            visited++;
+            side = compare(item, sum, tmp);
+            if (side != 0 && depth > 1) {
+                /* the key is within the bound on the other side of every
+                   range on the path; climb while it lies beyond this one */
+                Node[] bound = side < 0 ? lo : hi;
+                Node beyond = null;
+                int top = depth;
+                while (depth > 1 && bound[depth - 1] != null) {
+                    Node b = bound[depth - 1];
+                    if (b != beyond) {
+                        visited++;
+                        int d = compare(item, sum, b);
+                        if (side < 0 ? d > 0 : d < 0)
+                            break;
+                        beyond = b;
+                    }
+                    depth--;
+                }
+                if (depth != top) {
+                    tmp = path[depth - 1];
+                    visited++;
+                    side = compare(item, sum, tmp);
+                }
+            }
+            while (side != 0) {
+                Node child = side < 0 ? tmp.left : tmp.right;
+                if (child == null)
+                    return null;
+                push(child, side);
+                tmp = child;
+                visited++;
+                side = compare(item, sum, tmp);
+            }
+            return tmp;
+        }
+
+        /**
+         * An auxiliary method that appends a child of the last node on the
+         * path to the path
+         *
+         * @param child the child
+         * @param side  negative for a left child, positive for a right child
+         */
+        private void push(Node child, int side) {
+            Node parent = depth == 0 ? null : path[depth - 1];
+            path[depth] = child;
+            lo[depth] = depth == 0 ? null : side < 0 ? lo[depth - 1] : parent;
+            hi[depth] = depth == 0 ? null : side < 0 ? parent : hi[depth - 1];
+            depth++;
+        }
+
+        /**
+         * An auxiliary method that retraces the path upward after a new node
+         * is attached below its last node
+         *
+         * @param child the new node
+         * @return the index on the path of the node at which a rotation
+         * occurred, or -1 if there was no rotation
+         */
+        private int retrace(Node child) {
+            taller.set(true);
+            for (int i = depth - 1; i >= 0 && taller.get(); i--) {
+                Node node = path[i];
+                Node sub = node.left == child ? leftTaller(node, taller) : rightTaller(node, taller);
+                if (sub != node) {
+                    if (i == 0)
+                        root = sub;
+                    else if (path[i - 1].left == node)
+                        path[i - 1].left = sub;
+                    else
+                        path[i - 1].right = sub;
+                    return i;
+                }
+                child = node;
             }
+            return -1;
         }
     }
 
-    public void traverse(Function func) {
-        traverse(root, func);
+    /**
+     * Makes an immutable copy of this tree laid out in an array for
+     * fast searching.
+     *
+     * @return a read-only copy of this tree
+     */
+    public FrozenAVLTree<E> freeze() {
+        Object[] sorted = new Object[size()];
+        int[] next = new int[1];
+        traverse(root, (x) -> {
+            sorted[next[0]++] = x;
+            return null;
+        });
+        return new FrozenAVLTree<E>(sorted, baseCmp);
     }
 
-    @Override
-    public int size() {
-        return count;
+    /**
+     * Verifies in O(n) time that this tree is a valid AVL tree: the items
+     * are in strictly increasing order under the comparator, the balance
+     * factor of every node agrees with the heights of its subtrees, the
+     * occurrences of a key in a multiset are equal under the comparator
+     * and the size agrees with the number of items. Pending leaves of a
+     * relaxed tree count as absent from the heights of their ancestors.
+     *
+     * @throws AVLTreeException when an invariant does not hold
+     */
+    public void validate() throws AVLTreeException {
+        int[] nodes = new int[3];
+        validate(root, null, null, nodes);
+        if (nodes[2] != pending.size())
+            throw new AVLTreeException("AVL Tree Exception: " + pending.size() + " leaves pending but tree has " + nodes[2]);
+        if (nodes[0] != count)
+            throw new AVLTreeException("AVL Tree Exception: size is " + count + " but tree has " + nodes[0] + " nodes");
+        if (nodes[1] != duplicates)
+            throw new AVLTreeException("AVL Tree Exception: " + duplicates + " duplicates counted but tree has " + nodes[1]);
+    }
+
+    /**
+     * Turns validation of this tree after every mutation on or off; meant
+     * for testing since each validation takes O(n) time. A mutation that
+     * breaks an invariant throws an IllegalStateException.
+     *
+     * @param on true to validate after each mutation; otherwise, false
+     */
+    public void setDebug(boolean on) {
+        debug = on;
+    }
+
+    /**
+     * Starts counting the comparator calls, rotations, retrace depths and
+     * search depths of this tree. While metrics are disabled the only cost
+     * is a null check on the write path. A relaxed insertion of a new key
+     * is recorded as a write when its pending leaf is retraced, or with no
+     * ancestor retraced when settling rebuilds the tree.
+     *
+     * @return the counters of this tree
+     */
+    public AVLTreeMetrics enableMetrics() {
+        if (metrics == null) {
+            AVLTreeMetrics m = new AVLTreeMetrics();
+            Comparator<? super E> base = baseCmp;
+            cmp = (x, y) -> {
+                m.comparison();
+                return base.compare(x, y);
+            };
+            metrics = m;
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops counting the work done by this tree
+     */
+    public void disableMetrics() {
+        cmp = baseCmp;
+        metrics = null;
+    }
+
+    /**
+     * Gives the counters of this tree
+     *
+     * @return the counters of this tree, or null if metrics are disabled
+     */
+    public AVLTreeMetrics metrics() {
+        return metrics;
     }
 
     /*===> BEGIN: Augmented public methods <===*/
@@ -196,6 +922,7 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
         if (isEmpty()) {
             return path;
         }
+        settle();
         genPaths(root, "", path);
         return path;
     }
@@ -203,6 +930,7 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
     @Override
     public int height() {
         //Implement this method
+        settle();
         return height(root);
     }
 
@@ -212,7 +940,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
         if (root == null){
             return true;
         }
-        if (fibonacci(height(root) + 3) == size() + 1) {
+        settle();
+        if (fibonacci(height(root) + 3) == count + 1) {
             Queue<Node> q = new LinkedList<>();
             q.add(root);
             while (!q.isEmpty()) {
@@ -236,6 +965,7 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
     @Override
     public int fullCount() {
         //Implement this method
+        settle();
         return fullCount(root);
     }
     /*===> END: Augmented public methods <===*/
@@ -255,6 +985,248 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
 
     /* private methods definitions */
 
+    /**
+     * An auxiliary method that validates this tree after a mutation
+     * in debug mode
+     */
+    private void check() {
+        try {
+            validate();
+        } catch (AVLTreeException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * An auxiliary method that recursively validates the subtree rooted at
+     * the specified node
+     *
+     * @param node  the root of a subtree
+     * @param lo    the nearest ancestor the subtree lies to the right of, or null
+     * @param hi    the nearest ancestor the subtree lies to the left of, or null
+     * @param nodes a three-element array accumulating the number of nodes,
+     *              the number of duplicate items and the number of pending nodes
+     * @return the height of the subtree, not counting pending nodes
+     * @throws AVLTreeException when an invariant does not hold
+     */
+    private int validate(Node node, Node lo, Node hi, int[] nodes) throws AVLTreeException {
+        if (node == null)
+            return -1;
+        nodes[0]++;
+        if (multiset) {
+            MultisetNode m = (MultisetNode) node;
+            nodes[1] += m.dupCount;
+            for (int i = 0; i < m.dupCount; i++)
+                if (m.dups[i] == null || baseCmp.compare(m.dup(i), node.data) != 0)
+                    throw new AVLTreeException("AVL Tree Exception: " + m.dups[i] + " kept as a duplicate of " + node.data);
+        }
+        if (lo != null && baseCmp.compare(lo.data, node.data) >= 0)
+            throw new AVLTreeException("AVL Tree Exception: " + node.data + " out of order after " + lo.data);
+        if (hi != null && baseCmp.compare(node.data, hi.data) >= 0)
+            throw new AVLTreeException("AVL Tree Exception: " + node.data + " out of order before " + hi.data);
+        if (summary != null && ((SummaryNode) node).sum != summary.applyAsLong(node.data))
+            throw new AVLTreeException("AVL Tree Exception: stale key summary at " + node.data);
+        int left = validate(node.left, lo, node, nodes);
+        int right = validate(node.right, node, hi, nodes);
+        if (intervalHigh != null) {
+            long max = intervalHigh.applyAsLong(node.data);
+            if (node.left != null)
+                max = Math.max(max, maxOf(node.left));
+            if (node.right != null)
+                max = Math.max(max, maxOf(node.right));
+            if (maxOf(node) != max)
+                throw new AVLTreeException("AVL Tree Exception: stale interval maximum at " + node.data);
+        }
+        if (node.bal == null) {
+            if ((node.left != null && node.left.bal != null) || (node.right != null && node.right.bal != null))
+                throw new AVLTreeException("AVL Tree Exception: balanced node below pending node " + node.data);
+            nodes[2]++;
+            return -1;
+        }
+        if (right - left != node.bal.value)
+            throw new AVLTreeException("AVL Tree Exception: balance factor " + node.bal + " at " + node.data
+                    + " but subtree heights are " + left + " and " + right);
+        return 1 + Math.max(left, right);
+    }
+
+    /**
+     * An auxiliary method that recomputes the largest interval end point
+     * in the subtree rooted at a node from its children, when this tree
+     * holds intervals
+     *
+     * @param node a node whose children are up to date
+     */
+    private void fix(Node node) {
+        if (intervalHigh == null)
+            return;
+        long max = intervalHigh.applyAsLong(node.data);
+        if (node.left != null && maxOf(node.left) > max)
+            max = maxOf(node.left);
+        if (node.right != null && maxOf(node.right) > max)
+            max = maxOf(node.right);
+        ((IntervalNode) node).max = max;
+    }
+
+    /**
+     * An auxiliary method that gives the largest interval end point in the
+     * subtree rooted at a node of a tree of intervals
+     *
+     * @param node a node
+     * @return the largest end point in the subtree rooted at the node
+     */
+    private long maxOf(Node node) {
+        return ((IntervalNode) node).max;
+    }
+
+    /**
+     * Passes each interval overlapping [a, b] to an action, in increasing
+     * order of start point. Subtrees whose largest end point is before a,
+     * and right subtrees of intervals starting after b, are skipped.
+     *
+     * @param a      the start point of the query interval
+     * @param b      the end point of the query interval
+     * @param action receives each overlapping interval
+     */
+    void overlapping(long a, long b, Consumer<? super E> action) {
+        overlapping(root, a, b, action);
+    }
+
+    /**
+     * An auxiliary method that passes each interval overlapping [a, b] in
+     * the subtree rooted at a node to an action, in increasing order
+     *
+     * @param node   the root of a subtree
+     * @param a      the start point of the query interval
+     * @param b      the end point of the query interval
+     * @param action receives each overlapping interval
+     */
+    private void overlapping(Node node, long a, long b, Consumer<? super E> action) {
+        while (node != null && maxOf(node) >= a) {
+            overlapping(node.left, a, b, action);
+            if (intervalLow.applyAsLong(node.data) > b)
+                return;
+            if (intervalHigh.applyAsLong(node.data) >= a)
+                action.accept(node.data);
+            node = node.right;
+        }
+    }
+
+    /**
+     * An auxiliary method that compares an item with the data in a node,
+     * deciding by key summary when the summaries differ
+     *
+     * @param item an item
+     * @param sum  the key summary of the item, ignored without summaries
+     * @param node a node
+     * @return negative, zero or positive as the item is less than, equal
+     * to or greater than the data in the node
+     */
+    private int compare(E item, long sum, Node node) {
+        if (summary != null) {
+            long key = ((SummaryNode) node).sum;
+            if (sum != key)
+                return sum < key ? -1 : 1;
+        }
+        return cmp.compare(item, node.data);
+    }
+
+    /**
+     * An auxiliary method that gives the key summary of the data in a node
+     *
+     * @param node a node
+     * @return the key summary, or 0 without summaries
+     */
+    private long sumOf(Node node) {
+        return summary == null ? 0 : ((SummaryNode) node).sum;
+    }
+
+    /**
+     * An auxiliary method that gives the number of later occurrences of the
+     * key of the data in a node
+     *
+     * @param node a node
+     * @return the number of duplicates held by the node; 0 unless this
+     * tree is a multiset
+     */
+    private int dupCount(Node node) {
+        return multiset ? ((MultisetNode) node).dupCount : 0;
+    }
+
+    /**
+     * An auxiliary method that creates a node of the class this tree uses
+     *
+     * @param item the data of the node
+     * @param sum  the key summary of the item, ignored without summaries
+     * @return the new node, with no balance factor
+     */
+    private Node newNode(E item, long sum) {
+        Node node;
+        if (multiset || summary != null) {
+            SummaryNode keyed = multiset ? new MultisetNode() : new SummaryNode();
+            keyed.sum = sum;
+            node = keyed;
+        } else if (intervalHigh != null) {
+            node = new IntervalNode();
+        } else {
+            node = new Node();
+        }
+        node.data = item;
+        return node;
+    }
+
+    /**
+     * An auxiliary method that creates an array of nodes
+     *
+     * @param length the length of the array
+     * @return an array of the specified length with no nodes in it
+     */
+    @SuppressWarnings("unchecked") // Node is an inner class of a generic class, so its arrays can only be created raw
+    private Node[] newNodes(int length) {
+        return (Node[]) Array.newInstance(Node.class, length);
+    }
+
+    /**
+     * An auxiliary method that replaces the data in a node by an item with
+     * the same key
+     *
+     * @param node a node
+     * @param item the new data of the node
+     * @param sum  the key summary of the item, ignored without summaries
+     */
+    private void store(Node node, E item, long sum) {
+        node.data = item;
+        if (summary != null)
+            ((SummaryNode) node).sum = sum;
+    }
+
+    /**
+     * An auxiliary method that finds the node holding the specified key
+     *
+     * @param item item with a specified search key
+     * @param read whether the lookup counts as a search in the metrics;
+     *             the probe of a write does not
+     * @return the node holding the key, or null if it is not in the tree
+     */
+    private Node search(E item, boolean read) {
+        Node tmp = root;
+        long sum = summary == null ? 0 : summary.applyAsLong(item);
+        int depth = 0;
+        while (tmp != null) {
+            depth++;
+            int d = compare(item, sum, tmp);
+            if (d == 0)
+                break;
+            else if (d < 0)
+                tmp = tmp.left;
+            else
+                /* continue searching */
+                tmp = tmp.right;
+        }
+        if (read && metrics != null)
+            metrics.search(depth);
+        return tmp;
+    }
+
     /**
      * An auxiliary method that inserts a new node in the tree or
      * updates a node if the data is already in the tree.
@@ -268,49 +1240,326 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
     private Node insert(Node curRoot, Node newNode, AtomicBoolean taller) {
         if (curRoot == null) {
             curRoot = newNode;
+            count++;
             taller.set(true);
             return curRoot;
         }
-        int d = cmp.compare(newNode.data, curRoot.data);
+        int d = compare(newNode.data, sumOf(newNode), curRoot);
         if (d < 0) {
             curRoot.left = insert(curRoot.left, newNode, taller);
             if (taller.get())
-                switch (curRoot.bal) {
-                    case LH: // was left-high -- rotate
-                        curRoot = leftBalance(curRoot, taller);
-                        break;
-                    case EH: //was balanced -- now LH
-                        curRoot.bal = BalancedFactor.LH;
-                        break;
-                    case RH: //was right-high -- now EH
-                        curRoot.bal = BalancedFactor.EH;
-                        taller.set(false);
-                        break;
-                }
+                curRoot = leftTaller(curRoot, taller);
+            fix(curRoot);
             return curRoot;
         } else if (d > 0) {
             curRoot.right = insert(curRoot.right, newNode, taller);
             if (taller.get())
-                switch (curRoot.bal) {
-                    case LH: // was left-high -- now EH
-                        curRoot.bal = BalancedFactor.EH;
-                        taller.set(false);
-                        break;
-                    case EH: // was balance -- now RH
-                        curRoot.bal = BalancedFactor.RH;
-                        break;
-                    case RH: //was right high -- rotate
-                        curRoot = rightBalance(curRoot, taller);
-                        break;
-                }
+                curRoot = rightTaller(curRoot, taller);
+            fix(curRoot);
             return curRoot;
         } else {
-            curRoot.data = newNode.data;
+            if (multiset) {
+                append(curRoot, newNode.data);
+                duplicates++;
+            } else {
+                curRoot.take(newNode);
+            }
+            fix(curRoot);
             taller.set(false);
             return curRoot;
         }
     }
 
+    /**
+     * An auxiliary method that retraces a node whose left subtree has
+     * become taller after an insertion
+     *
+     * @param curRoot the node whose left subtree became taller
+     * @param taller  indicates whether the subtree at the node becomes taller
+     * @return the root of the subtree after retracing
+     */
+    private Node leftTaller(Node curRoot, AtomicBoolean taller) {
+        if (metrics != null)
+            retrace++;
+        switch (curRoot.bal) {
+            case LH: // was left-high -- rotate
+                curRoot = leftBalance(curRoot, taller);
+                break;
+            case EH: //was balanced -- now LH
+                curRoot.bal = BalancedFactor.LH;
+                break;
+            case RH: //was right-high -- now EH
+                curRoot.bal = BalancedFactor.EH;
+                taller.set(false);
+                break;
+        }
+        return curRoot;
+    }
+
+    /**
+     * An auxiliary method that retraces a node whose right subtree has
+     * become taller after an insertion
+     *
+     * @param curRoot the node whose right subtree became taller
+     * @param taller  indicates whether the subtree at the node becomes taller
+     * @return the root of the subtree after retracing
+     */
+    private Node rightTaller(Node curRoot, AtomicBoolean taller) {
+        if (metrics != null)
+            retrace++;
+        switch (curRoot.bal) {
+            case LH: // was left-high -- now EH
+                curRoot.bal = BalancedFactor.EH;
+                taller.set(false);
+                break;
+            case EH: // was balance -- now RH
+                curRoot.bal = BalancedFactor.RH;
+                break;
+            case RH: //was right high -- rotate
+                curRoot = rightBalance(curRoot, taller);
+                break;
+        }
+        return curRoot;
+    }
+
+    /**
+     * An auxiliary method that computes the item with the specified key in
+     * the subtree rooted at the specified node, inserting, replacing or
+     * deleting it as the function directs
+     *
+     * @param node    the root of a subtree
+     * @param key     the key of the item to be computed
+     * @param keyOf   extracts the key of an item
+     * @param keyCmp  a trichotomous integer value comparator of keys
+     * @param fn      computes the new item from the key and the current item
+     * @param taller  indicates whether the subtree becomes taller
+     * @param shorter indicates whether the subtree becomes shorter
+     * @param result  a one-element array receiving the new item
+     * @return the root of the subtree after the computation
+     */
+    private <K> Node compute(Node node, K key, Function<? super E, ? extends K> keyOf, Comparator<? super K> keyCmp,
+                             BiFunction<? super K, ? super E, ? extends E> fn, AtomicBoolean taller,
+                             AtomicBoolean shorter, Object[] result) {
+        if (node == null) {
+            E item = fn.apply(key, null);
+            result[0] = item;
+            if (item == null)
+                return null;
+            Node newNode = newNode(item, summary == null ? 0 : summary.applyAsLong(item));
+            newNode.bal = BalancedFactor.EH;
+            fix(newNode);
+            count++;
+            taller.set(true);
+            return newNode;
+        }
+        int d = keyCmp.compare(key, keyOf.apply(node.data));
+        if (metrics != null)
+            metrics.comparison();
+        if (d < 0) {
+            node.left = compute(node.left, key, keyOf, keyCmp, fn, taller, shorter, result);
+            if (taller.get())
+                node = leftTaller(node, taller);
+            else if (shorter.get()) {
+                if (metrics != null)
+                    retrace++;
+                node = deleteRightBalance(node, shorter);
+            }
+        } else if (d > 0) {
+            node.right = compute(node.right, key, keyOf, keyCmp, fn, taller, shorter, result);
+            if (taller.get())
+                node = rightTaller(node, taller);
+            else if (shorter.get()) {
+                if (metrics != null)
+                    retrace++;
+                node = deleteLeftBalance(node, shorter);
+            }
+        } else {
+            E item = fn.apply(key, node.data);
+            result[0] = item;
+            if (item != null) {
+                store(node, item, summary == null ? 0 : summary.applyAsLong(item));
+                fix(node);
+                return node;
+            }
+            if (dupCount(node) > 0) {
+                drop(node, node.data);
+                fix(node);
+                return node;
+            }
+            count--;
+            shorter.set(true);
+            if (node.right == null)
+                return node.left;
+            if (node.left == null)
+                return node.right;
+            Node exchPtr = node.left;
+            while (exchPtr.right != null)
+                exchPtr = exchPtr.right;
+            node.take(exchPtr);
+            node.left = remove(node.left, exchPtr.data, sumOf(exchPtr), shorter, new AtomicBoolean());
+            if (shorter.get())
+                node = deleteRightBalance(node, shorter);
+        }
+        fix(node);
+        return node;
+    }
+
+    /**
+     * An auxiliary method that attaches a new leaf without rebalancing,
+     * leaving it pending, or updates the node holding its key
+     *
+     * @param newNode the new node to be inserted
+     */
+    private void insertRelaxed(Node newNode) {
+        Node parent = null;
+        Node tmp = root;
+        int depth = 0;
+        int d = 0;
+        modCount++;
+        while (tmp != null) {
+            d = compare(newNode.data, sumOf(newNode), tmp);
+            if (d == 0)
+                break;
+            follow(depth++, tmp);
+            parent = tmp;
+            tmp = d < 0 ? tmp.left : tmp.right;
+        }
+        if (tmp != null) {
+            /* an update changes no height */
+            root = insert(root, newNode, new AtomicBoolean());
+            if (metrics != null)
+                metrics.write(0);
+        } else {
+            newNode.bal = null;
+            if (parent == null)
+                root = newNode;
+            else if (d < 0)
+                parent.left = newNode;
+            else
+                parent.right = newNode;
+            for (int i = depth - 1; i >= 0 && intervalHigh != null; i--)
+                fix(trail[i]);
+            count++;
+            pending.add(newNode);
+            /* an AVL tree of n nodes is less than 1.44 log2(n + 2) high */
+            if (depth > RELAXED_SLACK + 1.4405 * (64 - Long.numberOfLeadingZeros(count + 2L)))
+                settle();
+        }
+        if (debug)
+            check();
+    }
+
+    /**
+     * An auxiliary method that gives a pending leaf its balance factor and
+     * retraces its ancestors as an insertion would. Leaves are retraced in
+     * the order they were attached, so every ancestor of the leaf has its
+     * balance factor and the leaves still pending count as absent.
+     *
+     * @param leaf the oldest pending leaf
+     */
+    private void retrace(Node leaf) {
+        Node tmp = root;
+        int depth = 0;
+        while (tmp != leaf) {
+            follow(depth++, tmp);
+            tmp = compare(leaf.data, sumOf(leaf), tmp) < 0 ? tmp.left : tmp.right;
+        }
+        leaf.bal = BalancedFactor.EH;
+        AtomicBoolean taller = new AtomicBoolean(true);
+        Node child = leaf;
+        for (int i = depth - 1; i >= 0 && taller.get(); i--) {
+            Node node = trail[i];
+            Node sub = node.left == child ? leftTaller(node, taller) : rightTaller(node, taller);
+            if (sub != node) {
+                if (i == 0)
+                    root = sub;
+                else if (trail[i - 1].left == node)
+                    trail[i - 1].left = sub;
+                else
+                    trail[i - 1].right = sub;
+            }
+            child = sub;
+        }
+    }
+
+    /**
+     * An auxiliary method that records a node on the path being followed,
+     * enlarging the path as needed
+     *
+     * @param i    the depth of the node
+     * @param node the node
+     */
+    private void follow(int i, Node node) {
+        if (trail == null)
+            trail = newNodes(MAX_DEPTH);
+        else if (i == trail.length)
+            trail = Arrays.copyOf(trail, 2 * i);
+        trail[i] = node;
+    }
+
+    /**
+     * An auxiliary method that lists the nodes of a subtree in order
+     *
+     * @param node  the root of a subtree
+     * @param nodes receives the nodes
+     * @param next  the index in nodes of the first node of the subtree
+     * @return the index in nodes following the last node of the subtree
+     */
+    private int flatten(Node node, Node[] nodes, int next) {
+        while (node != null) {
+            next = flatten(node.left, nodes, next);
+            nodes[next++] = node;
+            node = node.right;
+        }
+        return next;
+    }
+
+    /**
+     * An auxiliary method that adds an occurrence of the key of a node to
+     * the items in the node
+     *
+     * @param node the node holding the key
+     * @param item the item to be added
+     */
+    private void append(Node node, E item) {
+        MultisetNode m = (MultisetNode) node;
+        if (m.dups == null)
+            m.dups = new Object[2];
+        else if (m.dupCount == m.dups.length)
+            m.dups = Arrays.copyOf(m.dups, 2 * m.dupCount);
+        m.dups[m.dupCount++] = item;
+    }
+
+    /**
+     * An auxiliary method that removes one occurrence of a key from a node
+     * holding several: the item equal to the specified one if there is
+     * one, otherwise the item most recently inserted
+     *
+     * @param node the node holding the key
+     * @param item item with the key of the node
+     */
+    private void drop(Node node, E item) {
+        MultisetNode m = (MultisetNode) node;
+        int i = m.dupCount - 1;
+        if (!item.equals(m.dups[i])) {
+            int j = i - 1;
+            while (j >= 0 && !item.equals(m.dups[j]))
+                j--;
+            if (j >= 0) {
+                i = j;
+            } else if (item.equals(m.data)) {
+                /* the first occurrence goes; the second takes its place */
+                m.data = m.dup(0);
+                i = 0;
+            }
+        }
+        System.arraycopy(m.dups, i + 1, m.dups, i, m.dupCount - i - 1);
+        m.dups[--m.dupCount] = null;
+        if (m.dupCount == 0)
+            m.dups = null;
+        duplicates--;
+    }
+
     /**
      * An auxiliary method that left-balances the specified node
      *
@@ -328,12 +1577,12 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                 leftTree.bal = BalancedFactor.EH;
                 // Rotate right
                 curRoot = rotateRight(curRoot);
+                if (metrics != null)
+                    metrics.rotation(false);
                 taller.set(false);
                 break;
             case EH: // This is an error
-                System.out.println("AVL Tree Error: error in balance tree in call to leftBalance()");
-                System.exit(1);
-                break;
+                throw new IllegalStateException("AVL Tree Error: error in balance tree in call to leftBalance()");
             case RH: // right-high - requires double rotation: first left, then right
                 rightTree = leftTree.right;
                 switch (rightTree.bal) {
@@ -355,6 +1604,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                 curRoot.left = rotateLeft(leftTree);
                 //rotate right
                 curRoot = rotateRight(curRoot);
+                if (metrics != null)
+                    metrics.rotation(true);
                 taller.set(false);
         }
         return curRoot;
@@ -377,11 +1628,12 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                 rightTree.bal = BalancedFactor.EH;
                 // Rotate left
                 curRoot = rotateLeft(curRoot);
+                if (metrics != null)
+                    metrics.rotation(false);
                 taller.set(false);
                 break;
             case EH: // This is an error
-                System.out.println("AVL Tree Error: error in balance tree in call to rightBalance()");
-                break;
+                throw new IllegalStateException("AVL Tree Error: error in balance tree in call to rightBalance()");
             case LH: // left-high - requires double rotation: first right, then left
                 leftTree = rightTree.left;
                 switch (leftTree.bal) {
@@ -403,6 +1655,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                 curRoot.right = rotateRight(rightTree);
                 //rotate left
                 curRoot = rotateLeft(curRoot);
+                if (metrics != null)
+                    metrics.rotation(true);
                 taller.set(false);
         }
         return curRoot;
@@ -419,6 +1673,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
         tmp = node.right;
         node.right = tmp.left;
         tmp.left = node;
+        fix(node);
+        fix(tmp);
         return tmp;
     }
 
@@ -433,6 +1689,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
         tmp = node.left;
         node.left = tmp.right;
         tmp.right = node;
+        fix(node);
+        fix(tmp);
         return tmp;
     }
 
@@ -442,24 +1700,56 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
      * @param node the root of a subtree
      * @param func the function to be applied to the data in each node
      */
+    @SuppressWarnings({"rawtypes", "unchecked"}) // AVLTreeAPI declares traverse with a raw Function
     private void traverse(Node node, Function func) {
         if (node != null) {
             traverse(node.left, func);
             func.apply(node.data);
+            for (int i = 0, k = dupCount(node); i < k; i++)
+                func.apply(((MultisetNode) node).dup(i));
             traverse(node.right, func);
         }
     }
 
+    /**
+     * An auxiliary method that links a sorted range of nodes into a
+     * balanced subtree; a range of s nodes gives a subtree of height
+     * floor(log2(s)) whose left side is never shorter than its right
+     *
+     * @param nodes the nodes in increasing order
+     * @param lo    the index of the first node in the range
+     * @param hi    one past the index of the last node in the range
+     * @return the root of the subtree
+     */
+    private Node link(Node[] nodes, int lo, int hi) {
+        if (lo >= hi)
+            return null;
+        int mid = lo + (hi - lo) / 2;
+        Node node = nodes[mid];
+        node.left = link(nodes, lo, mid);
+        node.right = link(nodes, mid + 1, hi);
+        fix(node);
+        int leftSize = mid - lo;
+        int rightSize = hi - mid - 1;
+        if (rightSize == 0 ? leftSize == 0
+                : 31 - Integer.numberOfLeadingZeros(leftSize) == 31 - Integer.numberOfLeadingZeros(rightSize))
+            node.bal = BalancedFactor.EH;
+        else
+            node.bal = BalancedFactor.LH;
+        return node;
+    }
+
     /**
      * An auxiliary method that deletes the specified node from this tree
      *
      * @param node    the node to be deleted
      * @param key     the item stored in this node
+     * @param keySum  the key summary of the item, ignored without summaries
      * @param shorter indicates whether the subtree becomes shorter
      * @param success indicates whether the node was successfully deleted
      * @return a reference to the deleted node
      */
-    private Node remove(Node node, E key, AtomicBoolean shorter, AtomicBoolean success) {
+    private Node remove(Node node, E key, long keySum, AtomicBoolean shorter, AtomicBoolean success) {
         Node delPtr;
         Node exchPtr;
         Node newRoot;
@@ -468,13 +1758,17 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
             success.set(false);
             return null;
         }
-        int d = cmp.compare(key, node.data);
+        int d = compare(key, keySum, node);
         if (d < 0) {
-            node.left = remove(node.left, key, shorter, success);
+            node.left = remove(node.left, key, keySum, shorter, success);
+            if (shorter.get() && metrics != null)
+                retrace++;
             if (shorter.get())
                 node = deleteRightBalance(node, shorter);
         } else if (d > 0) {
-            node.right = remove(node.right, key, shorter, success);
+            node.right = remove(node.right, key, keySum, shorter, success);
+            if (shorter.get() && metrics != null)
+                retrace++;
             if (shorter.get())
                 node = deleteLeftBalance(node, shorter);
         } else {
@@ -493,12 +1787,15 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                 exchPtr = node.left;
                 while (exchPtr.right != null)
                     exchPtr = exchPtr.right;
-                node.data = exchPtr.data;
-                node.left = remove(node.left, exchPtr.data, shorter, success);
+                node.take(exchPtr);
+                node.left = remove(node.left, exchPtr.data, sumOf(exchPtr), shorter, success);
+                if (shorter.get() && metrics != null)
+                    retrace++;
                 if (shorter.get())
                     node = deleteRightBalance(node, shorter);
             }
         }
+        fix(node);
         return node;
     }
 
@@ -542,6 +1839,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                     //rotate right, then left
                     node.right = rotateRight(rightTree);
                     node = rotateLeft(node);
+                    if (metrics != null)
+                        metrics.rotation(true);
                 } else {
                     switch (rightTree.bal) {
                         case LH:
@@ -556,6 +1855,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                             break;
                     }
                     node = rotateLeft(node);
+                    if (metrics != null)
+                        metrics.rotation(false);
                 }
         }
         return node;
@@ -601,6 +1902,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                     //rotate left, then right
                     node.left = rotateLeft(leftTree);
                     node = rotateRight(node);
+                    if (metrics != null)
+                        metrics.rotation(true);
                 } else {
                     switch (leftTree.bal) {
                         case RH:
@@ -615,6 +1918,8 @@ public class AVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
                             break;
                     }
                     node = rotateRight(node);
+                    if (metrics != null)
+                        metrics.rotation(false);
                 }
         }
         return node;
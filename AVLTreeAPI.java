@@ -3,34 +3,6 @@ package dendrologist;
 import java.util.function.Function;
 import java.util.ArrayList;
 // DISCLAIMER: I DO NOT SUPPORT PEOPLE PLAGIARIZING OUR CODE. I DO NOT TAKE RESPONSIBILITY FOR THE UNLAWFUL ACTIONS OF OTHERS.
-/**
- * Reports an exception in an AVL Tree
- * @author Duncan
- * <pre>
- * Instructor: Dr. Duncan
- * Note: DO NOT MODIFIED THIS FILE
- * </pre>
- */
-class AVLTreeException extends Exception 
-{
-
-    /**
-     * Creates a new instance of <code>AVLTreeException</code> without detail
-     * message.
-     */
-    public AVLTreeException() { }
-
-    /**
-     * Constructs an instance of <code>AVLTreeException</code> with the
-     * specified detail message.
-     * @param msg the detail message.
-     */
-    public AVLTreeException(String msg) 
-    {
-        super(msg);
-    }
-}
-
 /**
  * Describes operations on an AVLTree
  * @param <E> the data type
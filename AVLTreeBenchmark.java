@@ -0,0 +1,715 @@
+package dendrologist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * A quick throughput benchmark for the AVL tree and the structures built
+ * on it, runnable without a build. Each mode writes its results as CSV so
+ * that runs can be compared. These are single-run timings with one warm-up;
+ * for measurements with forks, iterations and error bounds use the JMH
+ * benchmarks in the benchmarks module, such as AVLTreeOpsBenchmark.
+ * <pre>
+ * Usage: AVLTreeBenchmark ops [max-size] [csv|json]
+ *        AVLTreeBenchmark cache [n]
+ *        AVLTreeBenchmark finger [n]
+ *        AVLTreeBenchmark frozen [max-size]
+ *        AVLTreeBenchmark keycache [n]
+ *        AVLTreeBenchmark wal [n]
+ *        AVLTreeBenchmark snapshot [n]
+ *        AVLTreeBenchmark concurrent [n]
+ * </pre>
+ *
+ * @see AVLTree
+ */
+public class AVLTreeBenchmark {
+    /**
+     * Consumes benchmark results so that the work producing them is not
+     * optimized away
+     */
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        String usage = "AVLTreeBenchmark <mode> [n]\n";
+        usage += "  <mode>:\n";
+        usage += "  ops       every AVLTreeAPI operation for each order code, key distribution and size\n";
+        usage += "  cache     hit rate and lookup latency of a hot-key cache under Zipfian reads\n";
+        usage += "  finger    insertion and search through a finger against the root on ordered streams\n";
+        usage += "  frozen    lookup latency of a frozen tree against the pointer tree\n";
+        usage += "  keycache  comparator calls and latency per lookup with and without key summaries\n";
+        usage += "  wal       write throughput of a durable tree at several group commit sizes\n";
+        usage += "  snapshot  size and load time of snapshots against re-insertion\n";
+        usage += "  concurrent  mixed-operation throughput of locked and flat-combining trees at 2 to 64 threads\n";
+        if (args.length < 1) {
+            System.out.println(usage);
+            throw new IllegalArgumentException("There should be at least 1 command line argument.");
+        }
+        switch (args[0]) {
+            case "ops":
+                ops(args.length > 1 ? Integer.parseInt(args[1]) : 100_000,
+                        args.length > 2 && args[2].equals("json"));
+                break;
+            case "cache":
+                cache(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "finger":
+                finger(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "frozen":
+                frozen(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "keycache":
+                keyCache(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "wal":
+                wal(args.length > 1 ? Integer.parseInt(args[1]) : 100_000);
+                break;
+            case "snapshot":
+                snapshot(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "concurrent":
+                concurrent(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            default:
+                System.out.println(usage);
+                throw new IllegalArgumentException("First argument not valid.");
+        }
+    }
+
+    /**
+     * Reports a rough mean time per call of every AVLTreeAPI operation for each
+     * of the Dendrologist order codes, key distributions and tree sizes from
+     * 1K up to the specified maximum. The keys are the base-36 numerals of
+     * 0..n-1, which are in increasing order under order code 3. A row is
+     * written per measurement as CSV or as one JSON object per line.
+     *
+     * @param maxSize the largest tree size to measure
+     * @param json    whether rows are written as JSON instead of CSV
+     */
+    private static void ops(int maxSize, boolean json) {
+        String[] distributions = {"sequential", "random", "zipfian"};
+        if (!json)
+            System.out.println("order-code,distribution,size,operation,calls,ns-per-call");
+        for (int n = 1_000; n <= maxSize; n *= 10) {
+            for (String distribution : distributions) {
+                String[] keys = keys(distribution, n, 42);
+                String[] probes = keys(distribution.equals("sequential") ? "random" : distribution,
+                        Math.min(n, 1_000_000), 43);
+                for (int code = -3; code <= 3; code++) {
+                    Comparator<String> cmp = Dendrologist.comparator(code);
+                    String prefix = json
+                            ? String.format("{\"orderCode\":%d,\"distribution\":\"%s\",\"size\":%d,", code, distribution, n)
+                            : String.format("%d,%s,%d,", code, distribution, n);
+                    /* one untimed run to warm up the code paths */
+                    operations(cmp, keys, probes, null);
+                    operations(cmp, keys, probes, (operation, calls, nanos) -> {
+                        double perCall = calls == 0 ? 0 : (double) nanos / calls;
+                        if (json)
+                            System.out.printf("%s\"operation\":\"%s\",\"calls\":%d,\"nsPerCall\":%.1f}%n",
+                                    prefix, operation, calls, perCall);
+                        else
+                            System.out.printf("%s%s,%d,%.1f%n", prefix, operation, calls, perCall);
+                    });
+                }
+            }
+        }
+        if (sink == 42)
+            System.out.println();
+    }
+
+    /**
+     * Times each AVLTreeAPI operation on a tree built from the specified keys
+     *
+     * @param cmp    the comparator of the tree
+     * @param keys   the keys inserted and then removed
+     * @param probes the keys searched for
+     * @param report receives each measurement, or null to discard them
+     */
+    private static void operations(Comparator<String> cmp, String[] keys, String[] probes, Report report) {
+        AVLTree<String> tree = new AVLTree<>(cmp);
+        long start = System.nanoTime();
+        for (String key : keys)
+            tree.insert(key);
+        long end = System.nanoTime();
+        if (report != null)
+            report.row("insert", keys.length, end - start);
+
+        start = System.nanoTime();
+        for (String probe : probes)
+            if (tree.inTree(probe))
+                sink++;
+        end = System.nanoTime();
+        if (report != null)
+            report.row("inTree", probes.length, end - start);
+
+        start = System.nanoTime();
+        for (String probe : probes) {
+            try {
+                sink += tree.retrieve(probe).length();
+            } catch (AVLTreeException e) {
+                sink--;
+            }
+        }
+        end = System.nanoTime();
+        if (report != null)
+            report.row("retrieve", probes.length, end - start);
+
+        start = System.nanoTime();
+        tree.traverse((x) -> {
+            sink++;
+            return null;
+        });
+        end = System.nanoTime();
+        if (report != null)
+            report.row("traverse", 1, end - start);
+
+        /* the paths of a large tree do not fit in memory */
+        if (tree.size() <= 100_000) {
+            start = System.nanoTime();
+            sink += tree.genPaths().size();
+            end = System.nanoTime();
+            if (report != null)
+                report.row("genPaths", 1, end - start);
+        }
+
+        int repeats = 1_000;
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            sink += tree.height();
+        end = System.nanoTime();
+        if (report != null)
+            report.row("height", repeats, end - start);
+
+        repeats = Math.max(1, 1_000_000 / Math.max(1, tree.size()));
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            sink += tree.fullCount();
+        end = System.nanoTime();
+        if (report != null)
+            report.row("fullCount", repeats, end - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            if (tree.isFibonacci())
+                sink++;
+        end = System.nanoTime();
+        if (report != null)
+            report.row("isFibonacci", repeats, end - start);
+
+        start = System.nanoTime();
+        for (String key : keys)
+            tree.remove(key);
+        end = System.nanoTime();
+        if (report != null)
+            report.row("remove", keys.length, end - start);
+    }
+
+    /**
+     * Generates keys drawn from a distribution over the base-36 numerals
+     * of 0..n-1
+     *
+     * @param distribution sequential for the numerals in increasing order,
+     *                     random for a shuffle of them or zipfian for n
+     *                     draws with Zipf exponent 0.99 whose popular ranks
+     *                     are scattered over the numerals
+     * @param n            the number of keys
+     * @param seed         the seed of the random number generator
+     * @return the keys
+     */
+    static String[] keys(String distribution, int n, long seed) {
+        Random rand = new Random(seed);
+        String[] keys = new String[n];
+        switch (distribution) {
+            case "sequential":
+                for (int i = 0; i < n; i++)
+                    keys[i] = Integer.toString(i, 36);
+                break;
+            case "random":
+                for (int i = 0; i < n; i++)
+                    keys[i] = Integer.toString(i, 36);
+                for (int i = n - 1; i > 0; i--) {
+                    int j = rand.nextInt(i + 1);
+                    String tmp = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = tmp;
+                }
+                break;
+            case "zipfian":
+                Zipf zipf = new Zipf(n, 0.99);
+                for (int i = 0; i < n; i++) {
+                    /* scatter ranks so that hot keys are not neighbours */
+                    long rank = zipf.next(rand);
+                    keys[i] = Integer.toString((int) ((rank * 0x9E3779B1L) % n), 36);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Distribution not valid: " + distribution);
+        }
+        return keys;
+    }
+
+    /**
+     * Receives one measurement of an operation
+     */
+    private interface Report {
+        /**
+         * Records a measurement
+         *
+         * @param operation the name of the operation
+         * @param calls     the number of calls measured
+         * @param nanos     the total time of the calls in nanoseconds
+         */
+        void row(String operation, long calls, long nanos);
+    }
+
+    /**
+     * Draws ranks from a Zipf distribution using the method of Gray et al.,
+     * "Quickly Generating Billion-Record Synthetic Databases"
+     */
+    private static class Zipf {
+        private final long n;
+        private final double theta;
+        private final double alpha;
+        private final double zetan;
+        private final double eta;
+
+        Zipf(long n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            double zeta2 = 1 + Math.pow(0.5, theta);
+            double sum = 0;
+            for (long i = 1; i <= n; i++)
+                sum += 1 / Math.pow(i, theta);
+            zetan = sum;
+            alpha = 1 / (1 - theta);
+            eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        /**
+         * Draws a rank
+         *
+         * @param rand the random number generator
+         * @return a rank in 0..n-1, 0 being the most popular
+         */
+        long next(Random rand) {
+            double u = rand.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1)
+                return 0;
+            if (uz < 1 + Math.pow(0.5, theta))
+                return 1;
+            return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    /**
+     * Reports the time per lookup of Zipfian reads in a plain tree and in
+     * trees fronted by caches of several sizes, with the hit rate and the
+     * sampled hit and miss latency of each cache
+     *
+     * @param n the number of keys in the tree
+     */
+    private static void cache(int n) {
+        String[] keys = keys("random", n, 42);
+        String[] reads = keys("zipfian", n, 43);
+        Comparator<String> cmp = Dendrologist.comparator(1);
+        System.out.println("structure,capacity,size,lookups,hit-rate,ns-per-lookup,ns-per-hit,ns-per-miss");
+        for (int capacity : new int[]{0, 256, 1024, 16384}) {
+            AVLTreeAPI<String> tree = capacity == 0
+                    ? new AVLTree<>(cmp)
+                    : new CachedAVLTree<>(cmp, Dendrologist.hash(1), capacity);
+            for (String key : keys)
+                tree.insert(key);
+            long nanos = 0;
+            for (int round = 0; round < 2; round++) {
+                if (tree instanceof CachedAVLTree)
+                    ((CachedAVLTree<String>) tree).resetStats();
+                long start = System.nanoTime();
+                for (String read : reads)
+                    if (tree.inTree(read))
+                        sink++;
+                nanos = System.nanoTime() - start;
+            }
+            if (tree instanceof CachedAVLTree) {
+                CachedAVLTree<String> cached = (CachedAVLTree<String>) tree;
+                System.out.printf("cached,%d,%d,%d,%.3f,%.1f,%.1f,%.1f%n", capacity, n, reads.length,
+                        cached.hitRate(), (double) nanos / reads.length, cached.meanHitNanos(), cached.meanMissNanos());
+            } else {
+                System.out.printf("plain,0,%d,%d,,%.1f,,%n", n, reads.length, (double) nanos / reads.length);
+            }
+        }
+    }
+
+    /**
+     * Reports the time and comparisons per insertion and per search of a
+     * stream of keys when starting each from the root and when starting
+     * from a finger, for sorted, nearly sorted and random streams. The
+     * nearly sorted stream displaces one key in a hundred by up to 1000
+     * positions.
+     *
+     * @param n the number of keys in the stream
+     */
+    private static void finger(int n) {
+        System.out.println("stream,start,operation,keys,comparisons-per-key,ns-per-key");
+        for (String stream : new String[]{"sorted", "near-sorted", "random"}) {
+            Integer[] keys = new Integer[n];
+            for (int i = 0; i < n; i++)
+                keys[i] = i;
+            Random rand = new Random(11);
+            for (int i = n - 1; i > 0; i--) {
+                int j;
+                if (stream.equals("random"))
+                    j = rand.nextInt(i + 1);
+                else if (stream.equals("near-sorted") && rand.nextInt(100) == 0)
+                    j = Math.max(0, i - 1 - rand.nextInt(1000));
+                else
+                    continue;
+                Integer tmp = keys[i];
+                keys[i] = keys[j];
+                keys[j] = tmp;
+            }
+            for (boolean useFinger : new boolean[]{false, true}) {
+                for (int round = 0; round < 2; round++) {
+                    AVLTree<Integer> tree = new AVLTree<>();
+                    AVLTreeMetrics metrics = round == 1 ? tree.enableMetrics() : null;
+                    AVLTree<Integer>.Finger finger = tree.finger();
+                    long start = System.nanoTime();
+                    for (Integer key : keys)
+                        if (useFinger)
+                            finger.insert(key);
+                        else
+                            tree.insert(key);
+                    long insert = System.nanoTime() - start;
+                    long insertComparisons = metrics == null ? 0 : metrics.snapshot().comparisons;
+                    finger.reset();
+                    start = System.nanoTime();
+                    for (Integer key : keys)
+                        if (useFinger ? finger.inTree(key) : tree.inTree(key))
+                            sink++;
+                    long search = System.nanoTime() - start;
+                    /* the first round warms up; the second is measured with metrics on */
+                    if (round == 1) {
+                        long searchComparisons = metrics.snapshot().comparisons - insertComparisons;
+                        String from = useFinger ? "finger" : "root";
+                        System.out.printf("%s,%s,insert,%d,%.2f,%.1f%n", stream, from, n,
+                                (double) insertComparisons / n, (double) insert / n);
+                        System.out.printf("%s,%s,inTree,%d,%.2f,%.1f%n", stream, from, n,
+                                (double) searchComparisons / n, (double) search / n);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports the mean latency of random successful lookups in a pointer
+     * tree and in a frozen copy of it for sizes from 1M up to the specified
+     * maximum
+     *
+     * @param maxSize the largest tree size to measure
+     */
+    private static void frozen(int maxSize) {
+        System.out.println("size,structure,lookups,ns-per-lookup");
+        for (int n = 1_000_000; n <= maxSize; n *= 10) {
+            ArrayList<Integer> sorted = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                sorted.add(2 * i);
+            AVLTree<Integer> tree = new AVLTree<>();
+            tree.load(sorted);
+            sorted = null;
+            FrozenAVLTree<Integer> frozen = tree.freeze();
+            Random rand = new Random(7);
+            Integer[] probes = new Integer[1_000_000];
+            for (int i = 0; i < probes.length; i++)
+                probes[i] = 2 * rand.nextInt(n);
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (Integer probe : probes)
+                    if (tree.inTree(probe))
+                        sink++;
+                long pointer = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (Integer probe : probes)
+                    if (frozen.inTree(probe))
+                        sink++;
+                long array = System.nanoTime() - start;
+                /* the first round warms up both searches */
+                if (round == 1) {
+                    System.out.printf("%d,pointer,%d,%.1f%n", n, probes.length, (double) pointer / probes.length);
+                    System.out.printf("%d,eytzinger,%d,%.1f%n", n, probes.length, (double) array / probes.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports, for each order code, the comparator calls and time per
+     * successful lookup in a tree of random words with and without the
+     * Dendrologist key summaries
+     *
+     * @param n the number of words inserted
+     */
+    private static void keyCache(int n) {
+        String[] words = randomWords(n, 42);
+        String[] probes = new String[Math.min(n, 1_000_000)];
+        Random rand = new Random(43);
+        for (int i = 0; i < probes.length; i++)
+            probes[i] = words[rand.nextInt(n)];
+        System.out.println("order-code,summary,size,lookups,comparisons-per-lookup,ns-per-lookup");
+        for (int code = -3; code <= 3; code++) {
+            for (boolean summarized : new boolean[]{false, true}) {
+                AVLTree<String> tree = summarized
+                        ? new AVLTree<>(Dendrologist.comparator(code), Dendrologist.summary(code))
+                        : new AVLTree<>(Dendrologist.comparator(code));
+                for (String word : words)
+                    tree.insert(word);
+                for (String probe : probes)
+                    if (tree.inTree(probe))
+                        sink++;
+                long start = System.nanoTime();
+                for (String probe : probes)
+                    if (tree.inTree(probe))
+                        sink++;
+                long nanos = System.nanoTime() - start;
+                AVLTreeMetrics metrics = tree.enableMetrics();
+                for (String probe : probes)
+                    if (tree.inTree(probe))
+                        sink++;
+                System.out.printf("%d,%b,%d,%d,%.2f,%.1f%n", code, summarized, tree.size(), probes.length,
+                        (double) metrics.snapshot().comparisons / probes.length, (double) nanos / probes.length);
+            }
+        }
+    }
+
+    /**
+     * Reports the write throughput of a durable tree for each group commit size
+     *
+     * @param n the number of insertions to perform per group commit size
+     * @throws IOException when the log cannot be written
+     */
+    private static void wal(int n) throws IOException {
+        String[] keys = randomWords(n, 42);
+        int[] groups = {1, 8, 64, 512, 4096};
+        System.out.println("group-commit,ops,seconds,ops-per-second");
+        for (int group : groups) {
+            Path dir = Files.createTempDirectory("avl-wal");
+            try {
+                long start = System.nanoTime();
+                try (DurableAVLTree<String> tree = new DurableAVLTree<>(dir, Comparator.naturalOrder(),
+                        ElementCodec.UTF8, group, 0)) {
+                    for (String key : keys)
+                        tree.insert(key);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%d,%d,%.3f,%.0f%n", group, n, seconds, n / seconds);
+            } finally {
+                delete(dir);
+            }
+        }
+    }
+
+    /**
+     * Reports the size of a snapshot of a tree with and without prefix
+     * compression, the time to write and load it and, for comparison, the
+     * time to rebuild the tree by inserting its items one at a time
+     *
+     * @param n the number of keys in the tree
+     * @throws IOException when the snapshot cannot be written or read
+     */
+    private static void snapshot(int n) throws IOException {
+        ArrayList<String> keys = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            keys.add(String.format("key%010d", i));
+        AVLTree<String> tree = new AVLTree<>();
+        tree.load(keys);
+        keys = null;
+        System.out.println("format,keys,bytes,write-seconds,load-seconds");
+        Path file = Files.createTempFile("avl", ".snapshot");
+        try {
+            for (boolean compress : new boolean[]{false, true}) {
+                long start = System.nanoTime();
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+                    AVLTreeSnapshot.write(tree, out, ElementCodec.UTF8, compress, AVLTreeSnapshot.DEFAULT_CHUNK_SIZE);
+                }
+                double write = (System.nanoTime() - start) / 1e9;
+                start = System.nanoTime();
+                AVLTree<String> copy = new AVLTree<>();
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+                    AVLTreeSnapshot.load(copy, in, ElementCodec.UTF8);
+                }
+                double load = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%s,%d,%d,%.3f,%.3f%n", compress ? "prefix" : "plain", copy.size(),
+                        Files.size(file), write, load);
+            }
+        } finally {
+            Files.delete(file);
+        }
+        long start = System.nanoTime();
+        AVLTree<String> copy = new AVLTree<>();
+        tree.traverse((x) -> {
+            copy.insert((String) x);
+            return null;
+        });
+        System.out.printf("re-insert,%d,,,%.3f%n", copy.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Reports the throughput of a tree shared by 2 to 64 threads when it is
+     * guarded by a monitor, by a ReentrantLock and by flat combining. Each
+     * thread performs 20% insertions, 20% removals and 60% searches of
+     * random keys in a range twice the size of the initial tree.
+     *
+     * @param n the total number of operations per run
+     */
+    private static void concurrent(int n) {
+        int range = 1 << 17;
+        System.out.println("structure,threads,ops,seconds,ops-per-second");
+        for (int threads = 2; threads <= 64; threads *= 2) {
+            for (String structure : new String[]{"synchronized", "lock", "combining"}) {
+                for (int round = 0; round < 2; round++) {
+                    AVLTreeAPI<Integer> tree = structure.equals("combining")
+                            ? new CombiningAVLTree<>()
+                            : new AVLTree<>();
+                    for (int i = 0; i < range; i += 2)
+                        tree.insert(i);
+                    ReentrantLock lock = new ReentrantLock();
+                    Operation operation;
+                    switch (structure) {
+                        case "synchronized":
+                            operation = (op, key) -> {
+                                synchronized (tree) {
+                                    return apply(tree, op, key);
+                                }
+                            };
+                            break;
+                        case "lock":
+                            operation = (op, key) -> {
+                                lock.lock();
+                                try {
+                                    return apply(tree, op, key);
+                                } finally {
+                                    lock.unlock();
+                                }
+                            };
+                            break;
+                        default:
+                            operation = (op, key) -> apply(tree, op, key);
+                    }
+                    int perThread = n / threads;
+                    Thread[] workers = new Thread[threads];
+                    long[] found = new long[threads];
+                    for (int t = 0; t < threads; t++) {
+                        int id = t;
+                        workers[t] = new Thread(() -> {
+                            Random rand = new Random(id);
+                            long hits = 0;
+                            for (int i = 0; i < perThread; i++) {
+                                int op = rand.nextInt(10);
+                                if (operation.apply(op < 2 ? 0 : op < 4 ? 1 : 2, rand.nextInt(range)))
+                                    hits++;
+                            }
+                            found[id] = hits;
+                        });
+                    }
+                    long start = System.nanoTime();
+                    for (Thread worker : workers)
+                        worker.start();
+                    for (Thread worker : workers) {
+                        try {
+                            worker.join();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    for (long hits : found)
+                        sink += hits;
+                    /* the first round warms up */
+                    if (round == 1)
+                        System.out.printf("%s,%d,%d,%.3f,%.0f%n", structure, threads, perThread * threads,
+                                seconds, perThread * threads / seconds);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies one operation of the concurrent benchmark to a shared tree
+     */
+    private interface Operation {
+        /**
+         * Applies an operation
+         *
+         * @param op  0 to insert, 1 to remove or 2 to search for the key
+         * @param key the key
+         * @return whether a search found the key
+         */
+        boolean apply(int op, Integer key);
+    }
+
+    /**
+     * Applies one operation of the concurrent benchmark to a tree
+     *
+     * @param tree the tree
+     * @param op   0 to insert, 1 to remove or 2 to search for the key
+     * @param key  the key
+     * @return whether a search found the key
+     */
+    private static boolean apply(AVLTreeAPI<Integer> tree, int op, Integer key) {
+        switch (op) {
+            case 0:
+                tree.insert(key);
+                return false;
+            case 1:
+                tree.remove(key);
+                return false;
+            default:
+                return tree.inTree(key);
+        }
+    }
+
+    /**
+     * Generates random lower-case words
+     *
+     * @param n    the number of words
+     * @param seed the seed of the random number generator
+     * @return the words
+     */
+    private static String[] randomWords(int n, long seed) {
+        Random rand = new Random(seed);
+        String[] words = new String[n];
+        char[] buf = new char[12];
+        for (int i = 0; i < n; i++) {
+            int length = 3 + rand.nextInt(buf.length - 2);
+            for (int j = 0; j < length; j++)
+                buf[j] = (char) ('a' + rand.nextInt(26));
+            words[i] = new String(buf, 0, length);
+        }
+        return words;
+    }
+
+    /**
+     * Deletes a directory and the files in it
+     *
+     * @param dir the directory
+     * @throws IOException when a file cannot be deleted
+     */
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator)
+                Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,30 @@
+package dendrologist;
+
+// DISCLAIMER: I DO NOT SUPPORT PEOPLE PLAGIARIZING OUR CODE. I DO NOT TAKE RESPONSIBILITY FOR THE UNLAWFUL ACTIONS OF OTHERS.
+/**
+ * Reports an exception in an AVL Tree
+ * @author Duncan
+ * <pre>
+ * Instructor: Dr. Duncan
+ * Note: DO NOT MODIFIED THIS FILE
+ * </pre>
+ */
+class AVLTreeException extends Exception 
+{
+
+    /**
+     * Creates a new instance of <code>AVLTreeException</code> without detail
+     * message.
+     */
+    public AVLTreeException() { }
+
+    /**
+     * Constructs an instance of <code>AVLTreeException</code> with the
+     * specified detail message.
+     * @param msg the detail message.
+     */
+    public AVLTreeException(String msg) 
+    {
+        super(msg);
+    }
+}
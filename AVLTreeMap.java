@@ -0,0 +1,242 @@
+package dendrologist;
+
+import java.util.Comparator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * An ordered map built on an AVL tree. Each entry keeps its key and its
+ * value in separate slots, so a lookup compares the probe key directly
+ * with the key of each entry it visits and never builds a probe entry.
+ * Updates locate, insert, replace or delete an entry in a single descent
+ * of the tree and change the value of an existing entry in place.
+ *
+ * @param <K> the data type of the keys
+ * @param <V> the data type of the values
+ * @see AVLTree#find(Object, Function, Comparator)
+ * @see AVLTree#compute(Object, Function, Comparator, BiFunction)
+ */
+public class AVLTreeMap<K, V> {
+    /**
+     * The tree of entries ordered by key
+     */
+    private final AVLTree<Entry> tree;
+    /**
+     * A comparator lambda function that compares two keys of this map
+     */
+    private final Comparator<? super K> keyCmp;
+    /**
+     * Extracts the key of an entry
+     */
+    private final Function<Entry, K> keyOf;
+
+    /**
+     * An entry of the map
+     */
+    private final class Entry implements Comparable<Entry> {
+        /**
+         * the key of this entry
+         */
+        final K key;
+        /**
+         * the value of this entry
+         */
+        V value;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return keyCmp.compare(key, other.key);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Constructs an empty map ordered by the natural ordering of its keys
+     */
+    @SuppressWarnings("unchecked") // the keys must be Comparable, as in a TreeMap without a comparator
+    public AVLTreeMap() {
+        this((x, y) -> ((Comparable<? super K>) x).compareTo(y));
+    }
+
+    /**
+     * Constructs an empty map ordered by an externally defined comparator
+     *
+     * @param fn - a trichotomous integer value comparator function of keys
+     */
+    public AVLTreeMap(Comparator<? super K> fn) {
+        keyCmp = fn;
+        keyOf = (e) -> e.key;
+        tree = new AVLTree<>();
+    }
+
+    /**
+     * Determines whether the map is empty.
+     *
+     * @return true if the map is empty;  otherwise, false
+     */
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return the size of the map
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * Determines whether the map has an entry for a key.
+     *
+     * @param key the key to be found
+     * @return true if the key is in the map; otherwise, false
+     */
+    public boolean containsKey(K key) {
+        return tree.find(key, keyOf, keyCmp) != null;
+    }
+
+    /**
+     * Gives the value of a key.
+     *
+     * @param key the key to be found
+     * @return the value of the key, or null if the key is not in the map
+     */
+    public V get(K key) {
+        Entry entry = tree.find(key, keyOf, keyCmp);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the previous value of the key, or null if there was none
+     */
+    public V put(K key, V value) {
+        Object[] displaced = new Object[1];
+        tree.compute(key, keyOf, keyCmp, (k, e) -> {
+            if (e == null)
+                return new Entry(k, value);
+            displaced[0] = e.value;
+            e.value = value;
+            return e;
+        });
+        return unbox(displaced);
+    }
+
+    /**
+     * Associates a value with a key unless the key already has a value.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the existing value of the key, or null if there was none
+     */
+    public V putIfAbsent(K key, V value) {
+        Object[] existing = new Object[1];
+        tree.compute(key, keyOf, keyCmp, (k, e) -> {
+            if (e == null)
+                return new Entry(k, value);
+            existing[0] = e.value;
+            return e;
+        });
+        return unbox(existing);
+    }
+
+    /**
+     * Computes a new value for a key from its current value. A null result
+     * removes the key from the map.
+     *
+     * @param key the key
+     * @param fn  computes the new value from the key and its current value,
+     *            which is null if the key has no value
+     * @return the new value, or null if there is none
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> fn) {
+        Entry entry = tree.compute(key, keyOf, keyCmp, (k, e) -> {
+            V value = fn.apply(k, e == null ? null : e.value);
+            if (value == null)
+                return null;
+            if (e == null)
+                return new Entry(k, value);
+            e.value = value;
+            return e;
+        });
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Associates a value with a key that has none, or otherwise combines it
+     * with the current value. A null combination removes the key.
+     *
+     * @param key   the key
+     * @param value the value to be associated or combined
+     * @param fn    combines the current value with the specified value
+     * @return the new value, or null if there is none
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> fn) {
+        Entry entry = tree.compute(key, keyOf, keyCmp, (k, e) -> {
+            if (e == null)
+                return new Entry(k, value);
+            V merged = fn.apply(e.value, value);
+            if (merged == null)
+                return null;
+            e.value = merged;
+            return e;
+        });
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key the key
+     * @return the value of the key, or null if the key was not in the map
+     */
+    public V remove(K key) {
+        Object[] removed = new Object[1];
+        tree.compute(key, keyOf, keyCmp, (k, e) -> {
+            if (e != null)
+                removed[0] = e.value;
+            return null;
+        });
+        return unbox(removed);
+    }
+
+    /**
+     * Applies an action to each key and value in increasing key order.
+     *
+     * @param action the action to be applied
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        tree.traverse((x) -> {
+            @SuppressWarnings("unchecked") // the tree holds only entries of this map
+            Entry entry = (Entry) x;
+            action.accept(entry.key, entry.value);
+            return null;
+        });
+    }
+
+    /**
+     * An auxiliary method that gives the value a computation left in a box
+     *
+     * @param box a one-element array holding a value of this map, or null
+     * @return the value in the box
+     */
+    @SuppressWarnings("unchecked") // the computations of this map only store values of type V in a box
+    private V unbox(Object[] box) {
+        return (V) box[0];
+    }
+}
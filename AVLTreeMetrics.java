@@ -0,0 +1,242 @@
+package dendrologist;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the work done by an AVL tree: comparator calls, rotations, the
+ * number of ancestors retraced by each write and the depth reached by each
+ * search. Counters are striped so that threads reading the tree
+ * concurrently do not contend on them.
+ *
+ * @see AVLTree#enableMetrics()
+ */
+public class AVLTreeMetrics {
+    /**
+     * The number of buckets in each depth histogram; deeper values are
+     * counted in the last bucket
+     */
+    public static final int DEPTHS = 64;
+
+    /**
+     * the number of comparator calls
+     */
+    private final LongAdder comparisons = new LongAdder();
+    /**
+     * the number of single rotations
+     */
+    private final LongAdder singleRotations = new LongAdder();
+    /**
+     * the number of double rotations
+     */
+    private final LongAdder doubleRotations = new LongAdder();
+    /**
+     * the number of writes indexed by the number of ancestors retraced
+     */
+    private final LongAdder[] retraceDepths = new LongAdder[DEPTHS];
+    /**
+     * the number of searches indexed by the number of nodes visited
+     */
+    private final LongAdder[] searchDepths = new LongAdder[DEPTHS];
+
+    /**
+     * Constructs a set of metrics with every counter at zero
+     */
+    AVLTreeMetrics() {
+        for (int i = 0; i < DEPTHS; i++) {
+            retraceDepths[i] = new LongAdder();
+            searchDepths[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a comparator call
+     */
+    void comparison() {
+        comparisons.increment();
+    }
+
+    /**
+     * Records comparator calls made without the counting comparator, such
+     * as those of a key comparator
+     *
+     * @param n the number of calls
+     */
+    void comparisons(int n) {
+        comparisons.add(n);
+    }
+
+    /**
+     * Records a rotation
+     *
+     * @param isDouble whether the rotation is a double rotation
+     */
+    void rotation(boolean isDouble) {
+        if (isDouble)
+            doubleRotations.increment();
+        else
+            singleRotations.increment();
+    }
+
+    /**
+     * Records a write
+     *
+     * @param depth the number of ancestors whose balance was retraced
+     */
+    void write(int depth) {
+        retraceDepths[Math.min(depth, DEPTHS - 1)].increment();
+    }
+
+    /**
+     * Records a search
+     *
+     * @param depth the number of nodes visited
+     */
+    void search(int depth) {
+        searchDepths[Math.min(depth, DEPTHS - 1)].increment();
+    }
+
+    /**
+     * Resets every counter to zero
+     */
+    public void reset() {
+        comparisons.reset();
+        singleRotations.reset();
+        doubleRotations.reset();
+        for (int i = 0; i < DEPTHS; i++) {
+            retraceDepths[i].reset();
+            searchDepths[i].reset();
+        }
+    }
+
+    /**
+     * Gives a copy of the current values of the counters. The copy is not
+     * atomic with respect to concurrent updates.
+     *
+     * @return the current values of the counters
+     */
+    public Snapshot snapshot() {
+        long[] retrace = new long[DEPTHS];
+        long[] search = new long[DEPTHS];
+        for (int i = 0; i < DEPTHS; i++) {
+            retrace[i] = retraceDepths[i].sum();
+            search[i] = searchDepths[i].sum();
+        }
+        return new Snapshot(comparisons.sum(), singleRotations.sum(), doubleRotations.sum(), retrace, search);
+    }
+
+    /**
+     * The values of the counters at one point in time
+     */
+    public static class Snapshot {
+        /**
+         * the number of comparator calls
+         */
+        public final long comparisons;
+        /**
+         * the number of single rotations
+         */
+        public final long singleRotations;
+        /**
+         * the number of double rotations
+         */
+        public final long doubleRotations;
+        /**
+         * the number of writes indexed by the number of ancestors retraced
+         */
+        private final long[] retraceDepths;
+        /**
+         * the number of searches indexed by the number of nodes visited
+         */
+        private final long[] searchDepths;
+
+        Snapshot(long comparisons, long singleRotations, long doubleRotations,
+                 long[] retraceDepths, long[] searchDepths) {
+            this.comparisons = comparisons;
+            this.singleRotations = singleRotations;
+            this.doubleRotations = doubleRotations;
+            this.retraceDepths = retraceDepths;
+            this.searchDepths = searchDepths;
+        }
+
+        /**
+         * Gives the number of writes that retraced the specified number of ancestors
+         *
+         * @param depth the number of ancestors retraced
+         * @return the number of writes
+         */
+        public long writesAtDepth(int depth) {
+            return retraceDepths[Math.min(depth, DEPTHS - 1)];
+        }
+
+        /**
+         * Gives the number of searches that visited the specified number of nodes
+         *
+         * @param depth the number of nodes visited
+         * @return the number of searches
+         */
+        public long searchesAtDepth(int depth) {
+            return searchDepths[Math.min(depth, DEPTHS - 1)];
+        }
+
+        /**
+         * Gives the number of writes recorded
+         *
+         * @return the number of writes
+         */
+        public long writes() {
+            return total(retraceDepths);
+        }
+
+        /**
+         * Gives the number of searches recorded
+         *
+         * @return the number of searches
+         */
+        public long searches() {
+            return total(searchDepths);
+        }
+
+        /**
+         * Gives the mean number of ancestors retraced per write
+         *
+         * @return the mean retrace depth, or 0 if there were no writes
+         */
+        public double meanRetraceDepth() {
+            return mean(retraceDepths);
+        }
+
+        /**
+         * Gives the mean number of nodes visited per search
+         *
+         * @return the mean search depth, or 0 if there were no searches
+         */
+        public double meanSearchDepth() {
+            return mean(searchDepths);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("comparisons = %d, rotations = %d single + %d double, "
+                            + "writes = %d (mean retrace %.2f), searches = %d (mean depth %.2f)",
+                    comparisons, singleRotations, doubleRotations, writes(), meanRetraceDepth(),
+                    searches(), meanSearchDepth());
+        }
+
+        private static long total(long[] histogram) {
+            long sum = 0;
+            for (long n : histogram)
+                sum += n;
+            return sum;
+        }
+
+        private static double mean(long[] histogram) {
+            long n = 0;
+            long sum = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                n += histogram[i];
+                sum += i * histogram[i];
+            }
+            return n == 0 ? 0 : (double) sum / n;
+        }
+    }
+}
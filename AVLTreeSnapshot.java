@@ -0,0 +1,333 @@
+package dendrologist;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the contents of an AVL tree to a compact binary snapshot and
+ * loads a snapshot back into a tree.
+ * <pre>
+ * Header: [int magic][byte version][byte flags][int count][int chunk-size]
+ * Chunk:  [int keys][int length][length bytes of keys][int crc32]
+ * Key:    [varint shared][varint suffix-length][suffix bytes]
+ * </pre>
+ * Keys are stored in in-order sequence. When prefix compression is on, each
+ * key records how many leading bytes it shares with the previous key in its
+ * chunk; otherwise the shared length is omitted. Every chunk starts afresh,
+ * so chunks can be decoded independently of one another and in parallel.
+ *
+ * @see AVLTree
+ * @see ElementCodec
+ */
+public final class AVLTreeSnapshot {
+    /**
+     * Identifies a snapshot
+     */
+    private static final int MAGIC = 0x41564C53;
+    /**
+     * The version of the snapshot format
+     */
+    private static final byte VERSION = 1;
+    /**
+     * The flag that marks a prefix-compressed snapshot
+     */
+    private static final byte PREFIX_COMPRESSED = 1;
+    /**
+     * The number of keys in a chunk when none is specified
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private AVLTreeSnapshot() {
+    }
+
+    /**
+     * Writes the items of a tree to a snapshot in in-order sequence.
+     *
+     * @param <E>       data type of elements of the tree
+     * @param tree      the tree to be written
+     * @param out       the stream to which the snapshot is written
+     * @param codec     converts elements to bytes
+     * @param compress  whether keys are prefix-compressed
+     * @param chunkSize the number of keys in a chunk
+     * @throws IOException when the stream cannot be written
+     */
+    public static <E extends Comparable<E>> void write(AVLTree<E> tree, OutputStream out, ElementCodec<E> codec,
+                                                       boolean compress, int chunkSize) throws IOException {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize must be positive");
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(compress ? PREFIX_COMPRESSED : 0);
+        data.writeInt(tree.size());
+        data.writeInt(chunkSize);
+        ChunkWriter chunk = new ChunkWriter(data, compress, chunkSize);
+        try {
+            tree.traverse((x) -> {
+                @SuppressWarnings("unchecked") // traverse hands back the elements of an AVLTree<E>
+                E item = (E) x;
+                try {
+                    chunk.add(codec.encode(item));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        chunk.flush();
+        data.flush();
+    }
+
+    /**
+     * Decodes the items of a snapshot, decoding its chunks in parallel.
+     *
+     * @param <E>   data type of the elements
+     * @param in    the stream from which the snapshot is read
+     * @param codec converts bytes to elements
+     * @return the items in the order in which they were written
+     * @throws IOException when the stream cannot be read or is not a valid
+     *                     snapshot
+     */
+    public static <E> List<E> read(InputStream in, ElementCodec<E> codec) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC)
+            throw new IOException("not an AVL tree snapshot");
+        if (data.readByte() != VERSION)
+            throw new IOException("unsupported snapshot version");
+        boolean compress = (data.readByte() & PREFIX_COMPRESSED) != 0;
+        int count = data.readInt();
+        int chunkSize = data.readInt();
+        if (count < 0 || chunkSize < 1)
+            throw new IOException("corrupt snapshot header");
+        ArrayList<byte[]> chunks = new ArrayList<>();
+        ArrayList<Integer> offsets = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        for (int read = 0; read < count; ) {
+            int keys = data.readInt();
+            int length = data.readInt();
+            if (keys < 1 || keys > chunkSize || keys > count - read || length < 0)
+                throw new IOException("corrupt snapshot chunk");
+            byte[] bytes = new byte[length];
+            data.readFully(bytes);
+            crc.reset();
+            crc.update(bytes);
+            if (data.readInt() != (int) crc.getValue())
+                throw new IOException("corrupt snapshot chunk");
+            chunks.add(bytes);
+            offsets.add(read);
+            read += keys;
+        }
+        Object[] items = new Object[count];
+        try {
+            IntStream.range(0, chunks.size()).parallel().forEach((i) -> {
+                int end = i + 1 < chunks.size() ? offsets.get(i + 1) : count;
+                decode(chunks.get(i), compress, codec, items, offsets.get(i), end);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        @SuppressWarnings("unchecked") // every slot holds an element decoded by the codec of E
+        List<E> sorted = (List<E>) Arrays.asList(items);
+        return sorted;
+    }
+
+    /**
+     * Replaces the contents of a tree with the items of a snapshot, building
+     * the tree in linear time.
+     *
+     * @param <E>   data type of elements of the tree
+     * @param tree  the tree to be loaded
+     * @param in    the stream from which the snapshot is read
+     * @param codec converts bytes to elements
+     * @throws IOException when the stream cannot be read or is not a valid
+     *                     snapshot
+     */
+    public static <E extends Comparable<E>> void load(AVLTree<E> tree, InputStream in,
+                                                      ElementCodec<E> codec) throws IOException {
+        List<E> items = read(in, codec);
+        try {
+            tree.load(items);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("snapshot not in the order of the tree: " + e.getMessage());
+        }
+    }
+
+    /* private methods definitions */
+
+    /**
+     * An auxiliary method that decodes the keys of a chunk
+     *
+     * @param bytes    the contents of the chunk
+     * @param compress whether keys are prefix-compressed
+     * @param codec    converts bytes to elements
+     * @param items    the array receiving the decoded elements
+     * @param from     the index in the array of the first key of the chunk
+     * @param to       one past the index in the array of the last key
+     */
+    private static <E> void decode(byte[] bytes, boolean compress, ElementCodec<E> codec,
+                                   Object[] items, int from, int to) {
+        byte[] key = new byte[64];
+        int pos = 0;
+        int keyLength = 0;
+        int[] cursor = new int[1];
+        for (int i = from; i < to; i++) {
+            cursor[0] = pos;
+            int shared = compress ? readVarint(bytes, cursor) : 0;
+            int suffix = readVarint(bytes, cursor);
+            pos = cursor[0];
+            if (shared > keyLength || suffix < 0 || pos + suffix > bytes.length)
+                throw new UncheckedIOException(new IOException("corrupt snapshot key"));
+            if (key.length < shared + suffix)
+                key = Arrays.copyOf(key, Math.max(shared + suffix, 2 * key.length));
+            System.arraycopy(bytes, pos, key, shared, suffix);
+            pos += suffix;
+            keyLength = shared + suffix;
+            items[i] = codec.decode(key, 0, keyLength);
+        }
+    }
+
+    /**
+     * An auxiliary method that reads an unsigned LEB128 integer
+     *
+     * @param bytes  the bytes holding the integer
+     * @param cursor a one-element array holding the index of the first byte;
+     *               it is advanced past the integer
+     * @return the integer
+     */
+    private static int readVarint(byte[] bytes, int[] cursor) {
+        int value = 0;
+        int pos = cursor[0];
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (pos >= bytes.length)
+                throw new UncheckedIOException(new IOException("corrupt snapshot key"));
+            byte b = bytes[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                cursor[0] = pos;
+                return value;
+            }
+        }
+        throw new UncheckedIOException(new IOException("corrupt snapshot key"));
+    }
+
+    /**
+     * Accumulates encoded keys into chunks and writes each chunk once full
+     */
+    private static class ChunkWriter {
+        /**
+         * the stream receiving the chunks
+         */
+        private final DataOutputStream out;
+        /**
+         * whether keys are prefix-compressed
+         */
+        private final boolean compress;
+        /**
+         * the number of keys in a full chunk
+         */
+        private final int chunkSize;
+        /**
+         * computes the checksum of each chunk
+         */
+        private final CRC32 crc = new CRC32();
+        /**
+         * the contents of the current chunk
+         */
+        private byte[] buf = new byte[1 << 16];
+        /**
+         * the number of bytes in the current chunk
+         */
+        private int length;
+        /**
+         * the number of keys in the current chunk
+         */
+        private int keys;
+        /**
+         * the previous key in the current chunk
+         */
+        private byte[] prev;
+
+        ChunkWriter(DataOutputStream out, boolean compress, int chunkSize) {
+            this.out = out;
+            this.compress = compress;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * Adds a key to the current chunk, writing the chunk once it is full
+         *
+         * @param key the encoded key
+         * @throws IOException when the stream cannot be written
+         */
+        void add(byte[] key) throws IOException {
+            int shared = 0;
+            if (compress && prev != null) {
+                int max = Math.min(prev.length, key.length);
+                while (shared < max && prev[shared] == key[shared])
+                    shared++;
+            }
+            ensure(10 + key.length - shared);
+            if (compress)
+                writeVarint(shared);
+            writeVarint(key.length - shared);
+            System.arraycopy(key, shared, buf, length, key.length - shared);
+            length += key.length - shared;
+            prev = key;
+            if (++keys == chunkSize)
+                flush();
+        }
+
+        /**
+         * Writes the current chunk if it holds any keys
+         *
+         * @throws IOException when the stream cannot be written
+         */
+        void flush() throws IOException {
+            if (keys == 0)
+                return;
+            crc.reset();
+            crc.update(buf, 0, length);
+            out.writeInt(keys);
+            out.writeInt(length);
+            out.write(buf, 0, length);
+            out.writeInt((int) crc.getValue());
+            keys = 0;
+            length = 0;
+            prev = null;
+        }
+
+        /**
+         * Makes room in the chunk buffer for the specified number of bytes
+         *
+         * @param extra the number of bytes to be appended
+         */
+        private void ensure(int extra) {
+            if (length + extra > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(length + extra, 2 * buf.length));
+        }
+
+        /**
+         * Appends an unsigned LEB128 integer to the chunk buffer
+         *
+         * @param value the integer
+         */
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                buf[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[length++] = (byte) value;
+        }
+    }
+}
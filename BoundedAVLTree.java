@@ -0,0 +1,482 @@
+package dendrologist;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * An AVL tree used as an ordered cache: the total weight of its items is
+ * kept within a budget, evicting items by a chosen policy, and each item
+ * may expire a fixed time after it was inserted. With the default weigher
+ * every item weighs 1, so the budget is a maximum size.
+ * <p>
+ * Eviction is amortized into the writes: an insertion that puts the tree
+ * over budget evicts items until it is back within it, and every write
+ * discards a few expired items. A lookup never sees an expired item. A
+ * background sweeper can also discard expired items periodically; the
+ * public methods are synchronized so that it can share the tree.
+ *
+ * @param <E> data type of elements of the tree
+ * @see AVLTree
+ */
+public class BoundedAVLTree<E extends Comparable<E>> implements AVLTreeAPI<E>, Closeable {
+    /**
+     * The order in which items are chosen for eviction
+     */
+    public enum Eviction {
+        /**
+         * the item least recently inserted or found goes first
+         */
+        LRU,
+        /**
+         * the item least recently inserted goes first
+         */
+        INSERTION,
+        /**
+         * the smallest item goes first
+         */
+        SMALLEST,
+        /**
+         * the largest item goes first
+         */
+        LARGEST
+    }
+
+    /**
+     * The largest number of expired items a write discards
+     */
+    private static final int EXPIRE_PER_WRITE = 4;
+
+    /**
+     * The tree of entries ordered by the comparator of their items
+     */
+    private final AVLTree<Entry> tree;
+    /**
+     * A comparator lambda function that compares two elements of the tree
+     */
+    private final Comparator<? super E> cmp;
+    /**
+     * Extracts the item of an entry
+     */
+    private final Function<Entry, E> elementOf;
+    /**
+     * Gives the weight of an item
+     */
+    private final ToLongFunction<? super E> weigher;
+    /**
+     * The largest total weight of the items
+     */
+    private final long budget;
+    /**
+     * The order in which items are evicted
+     */
+    private final Eviction policy;
+    /**
+     * The lifetime of an item in nanoseconds, or 0 if items do not expire
+     */
+    private final long ttl;
+    /**
+     * The total weight of the items
+     */
+    private long weight;
+    /**
+     * The least and most recently inserted entries
+     */
+    private Entry oldest, newest;
+    /**
+     * The least and most recently used entries, under the LRU policy
+     */
+    private Entry coldest, hottest;
+    /**
+     * The number of items evicted to keep within the budget
+     */
+    private long evictions;
+    /**
+     * The number of items discarded on expiry
+     */
+    private long expirations;
+    /**
+     * The background sweeper, or null when there is none
+     */
+    private Thread sweeper;
+
+    /**
+     * An item of the tree with its weight, its expiry time and its links
+     * in the insertion and use orders
+     */
+    private final class Entry implements Comparable<Entry> {
+        /**
+         * the item of this entry
+         */
+        E element;
+        /**
+         * the weight of the item
+         */
+        long weight;
+        /**
+         * the value of System.nanoTime() at which the item expires
+         */
+        long expires;
+        /**
+         * the neighbours of this entry in insertion order
+         */
+        Entry older, newer;
+        /**
+         * the neighbours of this entry in use order, under the LRU policy
+         */
+        Entry colder, hotter;
+
+        @Override
+        public int compareTo(Entry other) {
+            return cmp.compare(element, other.element);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(element);
+        }
+    }
+
+    /**
+     * Constructs an empty tree holding at most the specified number of items
+     *
+     * @param fn      - a trichotomous integer value comparator function
+     * @param maxSize - the largest number of items
+     * @param policy  - the order in which items are evicted
+     */
+    public BoundedAVLTree(Comparator<? super E> fn, long maxSize, Eviction policy) {
+        this(fn, (x) -> 1, maxSize, policy, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Constructs an empty tree whose items weigh at most the specified
+     * budget and expire the specified time after insertion
+     *
+     * @param fn      - a trichotomous integer value comparator function
+     * @param weigher - gives the weight of an item, a non-negative number
+     * @param budget  - the largest total weight of the items
+     * @param policy  - the order in which items are evicted
+     * @param ttl     - the lifetime of an item, or 0 if items do not expire
+     * @param unit    - the unit of the lifetime
+     */
+    public BoundedAVLTree(Comparator<? super E> fn, ToLongFunction<? super E> weigher, long budget,
+                          Eviction policy, long ttl, TimeUnit unit) {
+        if (budget < 0 || ttl < 0)
+            throw new IllegalArgumentException("budget and lifetime must not be negative");
+        tree = new AVLTree<>();
+        cmp = fn;
+        elementOf = (e) -> e.element;
+        this.weigher = weigher;
+        this.budget = budget;
+        this.policy = policy;
+        this.ttl = unit.toNanos(ttl);
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        expire(Integer.MAX_VALUE);
+        return tree.isEmpty();
+    }
+
+    @Override
+    public synchronized void insert(E obj) {
+        long w = weigher.applyAsLong(obj);
+        if (w < 0)
+            throw new IllegalArgumentException("negative weight " + w + " for " + obj);
+        expire(EXPIRE_PER_WRITE);
+        Entry entry = tree.find(obj, elementOf, cmp);
+        if (entry == null) {
+            entry = new Entry();
+            entry.element = obj;
+            tree.insert(entry);
+        } else {
+            entry.element = obj;
+            weight -= entry.weight;
+            unlink(entry);
+        }
+        entry.weight = w;
+        weight += w;
+        entry.expires = ttl == 0 ? 0 : System.nanoTime() + ttl;
+        link(entry);
+        while (weight > budget && !tree.isEmpty()) {
+            discard(victim());
+            evictions++;
+        }
+    }
+
+    @Override
+    public synchronized boolean inTree(E item) {
+        return lookup(item) != null;
+    }
+
+    @Override
+    public synchronized void remove(E item) {
+        expire(EXPIRE_PER_WRITE);
+        Entry entry = tree.find(item, elementOf, cmp);
+        if (entry != null)
+            discard(entry);
+    }
+
+    @Override
+    public synchronized E retrieve(E key) throws AVLTreeException {
+        Entry entry = lookup(key);
+        if (entry != null)
+            return entry.element;
+        if (tree.isEmpty())
+            throw new AVLTreeException("AVL Tree Exception: tree empty on call to retrieve()");
+        throw new AVLTreeException("AVL Tree Exception: key not in tree call to retrieve()");
+    }
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"}) // AVLTreeAPI declares traverse with a raw Function, and the tree holds only entries
+    public synchronized void traverse(Function func) {
+        expire(Integer.MAX_VALUE);
+        tree.traverse((x) -> func.apply(((Entry) x).element));
+    }
+
+    @Override
+    public synchronized int size() {
+        expire(Integer.MAX_VALUE);
+        return tree.size();
+    }
+
+    @Override
+    public synchronized ArrayList<String> genPaths() {
+        expire(Integer.MAX_VALUE);
+        return tree.genPaths();
+    }
+
+    @Override
+    public synchronized int height() {
+        expire(Integer.MAX_VALUE);
+        return tree.height();
+    }
+
+    @Override
+    public synchronized boolean isFibonacci() {
+        expire(Integer.MAX_VALUE);
+        return tree.isFibonacci();
+    }
+
+    @Override
+    public synchronized int fullCount() {
+        expire(Integer.MAX_VALUE);
+        return tree.fullCount();
+    }
+
+    /**
+     * Gives the total weight of the items, counting expired items not yet
+     * discarded
+     *
+     * @return the total weight
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    /**
+     * Gives the number of items evicted to keep within the budget
+     *
+     * @return the number of evictions
+     */
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Gives the number of items discarded on expiry
+     *
+     * @return the number of expirations
+     */
+    public synchronized long expirationCount() {
+        return expirations;
+    }
+
+    /**
+     * Discards every expired item.
+     */
+    public synchronized void sweep() {
+        expire(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Starts a daemon thread that discards the expired items periodically.
+     * A running sweeper is stopped first.
+     *
+     * @param period - the time between sweeps
+     * @param unit   - the unit of the period
+     */
+    public synchronized void startSweeper(long period, TimeUnit unit) {
+        if (period <= 0)
+            throw new IllegalArgumentException("period must be positive");
+        close();
+        long millis = Math.max(1, unit.toMillis(period));
+        sweeper = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(millis);
+                    sweep();
+                }
+            } catch (InterruptedException e) {
+                /* stopped */
+            }
+        }, "avl-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    /**
+     * Stops the background sweeper, if there is one.
+     */
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.interrupt();
+            sweeper = null;
+        }
+    }
+
+    /* private methods definitions */
+
+    /**
+     * An auxiliary method that finds the live entry with the specified key,
+     * discarding it if it has expired and marking it used otherwise
+     *
+     * @param item item with a specified search key
+     * @return the entry with the key, or null if there is none
+     */
+    private Entry lookup(E item) {
+        Entry entry = tree.find(item, elementOf, cmp);
+        if (entry == null)
+            return null;
+        if (ttl != 0 && entry.expires - System.nanoTime() <= 0) {
+            discard(entry);
+            expirations++;
+            return null;
+        }
+        if (policy == Eviction.LRU && entry != hottest) {
+            unlinkUse(entry);
+            linkUse(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * An auxiliary method that discards expired items in order of insertion
+     *
+     * @param limit the largest number of items to discard
+     */
+    private void expire(int limit) {
+        if (ttl == 0)
+            return;
+        long now = System.nanoTime();
+        for (int i = 0; i < limit && oldest != null && oldest.expires - now <= 0; i++) {
+            discard(oldest);
+            expirations++;
+        }
+    }
+
+    /**
+     * An auxiliary method that chooses the entry to be evicted next
+     *
+     * @return the entry to be evicted
+     */
+    private Entry victim() {
+        switch (policy) {
+            case LRU:
+                return coldest;
+            case SMALLEST:
+                return tree.min();
+            case LARGEST:
+                return tree.max();
+            default:
+                return oldest;
+        }
+    }
+
+    /**
+     * An auxiliary method that removes an entry from the tree and from the
+     * insertion and use orders
+     *
+     * @param entry the entry to be removed
+     */
+    private void discard(Entry entry) {
+        tree.remove(entry);
+        weight -= entry.weight;
+        unlink(entry);
+    }
+
+    /**
+     * An auxiliary method that appends an entry to the insertion order and,
+     * under the LRU policy, to the use order
+     *
+     * @param entry an entry in neither order
+     */
+    private void link(Entry entry) {
+        entry.older = newest;
+        entry.newer = null;
+        if (newest == null)
+            oldest = entry;
+        else
+            newest.newer = entry;
+        newest = entry;
+        if (policy == Eviction.LRU)
+            linkUse(entry);
+    }
+
+    /**
+     * An auxiliary method that takes an entry out of the insertion order
+     * and, under the LRU policy, out of the use order
+     *
+     * @param entry an entry in both orders
+     */
+    private void unlink(Entry entry) {
+        if (entry.older == null)
+            oldest = entry.newer;
+        else
+            entry.older.newer = entry.newer;
+        if (entry.newer == null)
+            newest = entry.older;
+        else
+            entry.newer.older = entry.older;
+        entry.older = entry.newer = null;
+        if (policy == Eviction.LRU)
+            unlinkUse(entry);
+    }
+
+    /**
+     * An auxiliary method that appends an entry to the use order as the
+     * most recently used
+     *
+     * @param entry an entry not in the use order
+     */
+    private void linkUse(Entry entry) {
+        entry.colder = hottest;
+        entry.hotter = null;
+        if (hottest == null)
+            coldest = entry;
+        else
+            hottest.hotter = entry;
+        hottest = entry;
+    }
+
+    /**
+     * An auxiliary method that takes an entry out of the use order
+     *
+     * @param entry an entry in the use order
+     */
+    private void unlinkUse(Entry entry) {
+        if (entry.colder == null)
+            coldest = entry.hotter;
+        else
+            entry.colder.hotter = entry.hotter;
+        if (entry.hotter == null)
+            hottest = entry.colder;
+        else
+            entry.hotter.colder = entry.colder;
+        entry.colder = entry.hotter = null;
+    }
+}
@@ -0,0 +1,342 @@
+package dendrologist;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * An AVL tree fronted by a small fixed-size cache of recently found items,
+ * for read traffic concentrated on a few keys. The cache is 4-way set
+ * associative: a key hashes to one set of four slots and, on a miss, the
+ * found item replaces a slot of that set chosen by the CLOCK policy, which
+ * spares slots hit since the hand last passed them.
+ * <p>
+ * Items are matched by the comparator of the tree, so the hash function
+ * must agree with it: items that compare equal must have equal hashes.
+ * Inserting an item replaces the cached item with an equal key and
+ * removing an item evicts it, so lookups never see stale data.
+ *
+ * @param <E> data type of elements of the tree
+ * @see AVLTree
+ */
+public class CachedAVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
+    /**
+     * The number of slots in a set
+     */
+    private static final int WAYS = 4;
+    /**
+     * One lookup in this many is timed
+     */
+    private static final int SAMPLE = 64;
+
+    /**
+     * The tree holding every item
+     */
+    private final AVLTree<E> tree;
+    /**
+     * A comparator lambda function that compares two elements of the tree
+     */
+    private final Comparator<? super E> cmp;
+    /**
+     * A hash function that agrees with the comparator
+     */
+    private final ToIntFunction<? super E> hash;
+    /**
+     * Gives an item as its own key for probe-free searches of the tree
+     */
+    private final Function<E, E> self;
+    /**
+     * The cached items; slots WAYS * s through WAYS * s + WAYS - 1 form set s
+     */
+    private final Object[] slots;
+    /**
+     * Whether each slot has been hit since the clock hand last passed it
+     */
+    private final boolean[] referenced;
+    /**
+     * The position of the clock hand in each set
+     */
+    private final byte[] hands;
+    /**
+     * The number of sets less one; the number of sets is a power of two
+     */
+    private final int mask;
+    /**
+     * The number of lookups answered by the cache
+     */
+    private long hits;
+    /**
+     * The number of lookups answered by the tree
+     */
+    private long misses;
+    /**
+     * The number of items evicted to make room for another
+     */
+    private long evictions;
+    /**
+     * The number of lookups made, used to choose the ones to time
+     */
+    private long lookups;
+    /**
+     * The number and total time of timed hits
+     */
+    private long timedHits, hitNanos;
+    /**
+     * The number and total time of timed misses
+     */
+    private long timedMisses, missNanos;
+
+    /**
+     * Constructs an empty tree with a cache of at least the specified
+     * number of slots, rounded up to a power of two
+     *
+     * @param fn       - a trichotomous integer value comparator function
+     * @param hash     - a hash function giving equal hashes to items that
+     *                 the comparator finds equal
+     * @param capacity - the number of items the cache can hold
+     */
+    public CachedAVLTree(Comparator<? super E> fn, ToIntFunction<? super E> hash, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        int sets = 1;
+        while (sets * WAYS < capacity)
+            sets <<= 1;
+        tree = new AVLTree<E>(fn);
+        cmp = fn;
+        this.hash = hash;
+        self = (x) -> x;
+        slots = new Object[sets * WAYS];
+        referenced = new boolean[sets * WAYS];
+        hands = new byte[sets];
+        mask = sets - 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    @Override
+    public void insert(E obj) {
+        tree.insert(obj);
+        int slot = slotOf(obj);
+        if (slot >= 0)
+            slots[slot] = obj;
+    }
+
+    @Override
+    public boolean inTree(E item) {
+        return lookup(item) != null;
+    }
+
+    @Override
+    public void remove(E item) {
+        tree.remove(item);
+        int slot = slotOf(item);
+        if (slot >= 0) {
+            slots[slot] = null;
+            referenced[slot] = false;
+        }
+    }
+
+    @Override
+    public E retrieve(E key) throws AVLTreeException {
+        if (tree.isEmpty())
+            throw new AVLTreeException("AVL Tree Exception: tree empty on call to retrieve()");
+        E item = lookup(key);
+        if (item == null)
+            throw new AVLTreeException("AVL Tree Exception: key not in tree call to retrieve()");
+        return item;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // AVLTreeAPI declares traverse with a raw Function
+    public void traverse(Function func) {
+        tree.traverse(func);
+    }
+
+    @Override
+    public int size() {
+        return tree.size();
+    }
+
+    @Override
+    public ArrayList<String> genPaths() {
+        return tree.genPaths();
+    }
+
+    @Override
+    public int height() {
+        return tree.height();
+    }
+
+    @Override
+    public boolean isFibonacci() {
+        return tree.isFibonacci();
+    }
+
+    @Override
+    public int fullCount() {
+        return tree.fullCount();
+    }
+
+    /**
+     * Gives the number of lookups answered by the cache
+     *
+     * @return the number of hits
+     */
+    public long hitCount() {
+        return hits;
+    }
+
+    /**
+     * Gives the number of lookups answered by the tree
+     *
+     * @return the number of misses
+     */
+    public long missCount() {
+        return misses;
+    }
+
+    /**
+     * Gives the number of items evicted to make room for another
+     *
+     * @return the number of evictions
+     */
+    public long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Gives the fraction of lookups answered by the cache
+     *
+     * @return the hit rate, or 0 if there were no lookups
+     */
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Gives the mean time of a lookup answered by the cache, estimated
+     * from a sample of the lookups
+     *
+     * @return the mean hit latency in nanoseconds, or 0 if none was sampled
+     */
+    public double meanHitNanos() {
+        return timedHits == 0 ? 0 : (double) hitNanos / timedHits;
+    }
+
+    /**
+     * Gives the mean time of a lookup answered by the tree, estimated
+     * from a sample of the lookups
+     *
+     * @return the mean miss latency in nanoseconds, or 0 if none was sampled
+     */
+    public double meanMissNanos() {
+        return timedMisses == 0 ? 0 : (double) missNanos / timedMisses;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counts and the latency samples
+     */
+    public void resetStats() {
+        hits = misses = evictions = lookups = 0;
+        timedHits = hitNanos = timedMisses = missNanos = 0;
+    }
+
+    /* private methods definitions */
+
+    /**
+     * An auxiliary method that finds an item in the cache or, failing that,
+     * in the tree, caching what the tree gives
+     *
+     * @param item item with a specified search key
+     * @return the item in the tree with the key, or null if there is none
+     */
+    private E lookup(E item) {
+        boolean timed = (++lookups & (SAMPLE - 1)) == 0;
+        long start = timed ? System.nanoTime() : 0;
+        int base = setOf(item) * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            E cached = cached(i);
+            if (cached != null && cmp.compare(cached, item) == 0) {
+                referenced[i] = true;
+                hits++;
+                if (timed) {
+                    timedHits++;
+                    hitNanos += System.nanoTime() - start;
+                }
+                return cached;
+            }
+        }
+        misses++;
+        E found = tree.find(item, self, cmp);
+        if (found != null)
+            admit(base, found);
+        if (timed) {
+            timedMisses++;
+            missNanos += System.nanoTime() - start;
+        }
+        return found;
+    }
+
+    /**
+     * An auxiliary method that places an item in its set, evicting the
+     * first item the clock hand finds unreferenced
+     *
+     * @param base the index of the first slot of the set
+     * @param item the item to be cached
+     */
+    private void admit(int base, E item) {
+        int set = base / WAYS;
+        int hand = hands[set];
+        while (slots[base + hand] != null && referenced[base + hand]) {
+            referenced[base + hand] = false;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        if (slots[base + hand] != null)
+            evictions++;
+        slots[base + hand] = item;
+        referenced[base + hand] = false;
+        hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+    }
+
+    /**
+     * An auxiliary method that gives the slot caching an item with the
+     * same key as the specified item
+     *
+     * @param item item with a specified search key
+     * @return the index of the slot, or -1 if the key is not cached
+     */
+    private int slotOf(E item) {
+        int base = setOf(item) * WAYS;
+        for (int i = base; i < base + WAYS; i++)
+            if (slots[i] != null && cmp.compare(cached(i), item) == 0)
+                return i;
+        return -1;
+    }
+
+    /**
+     * An auxiliary method that gives the item cached in a slot
+     *
+     * @param i the index of the slot
+     * @return the item in the slot, or null if it is empty
+     */
+    @SuppressWarnings("unchecked") // slots holds only items of type E, placed by admit and insert
+    private E cached(int i) {
+        return (E) slots[i];
+    }
+
+    /**
+     * An auxiliary method that gives the set an item hashes to
+     *
+     * @param item an item
+     * @return the index of the set
+     */
+    private int setOf(E item) {
+        int h = hash.applyAsInt(item) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
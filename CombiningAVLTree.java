@@ -0,0 +1,389 @@
+package dendrologist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A thread-safe AVL tree that applies concurrent requests by flat
+ * combining. Each thread publishes its insert, remove, inTree or retrieve
+ * request in a slot of its own; whichever thread acquires the combiner
+ * lock applies every published request in one batch, while the other
+ * threads wait for their slot to be answered instead of each taking the
+ * lock in turn. Requests are applied in the order they are gathered:
+ * sorting a batch would cost log k comparator calls per request for a
+ * batch of k, and the keys of concurrent requests lie too far apart for
+ * a finger to descend from one to the next for less than a search from
+ * the root.
+ * <p>
+ * The remaining operations acquire the combiner lock directly. A request
+ * that throws, for instance because the comparator rejects its key, fails
+ * only in the thread that made it. The combiner unregisters the slots of
+ * threads that have ended.
+ *
+ * @param <E> data type of elements of the tree
+ * @see AVLTree
+ */
+public class CombiningAVLTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
+    /**
+     * The operation code of a slot with no pending request
+     */
+    private static final int NONE = 0;
+    /**
+     * The operation code of an insertion
+     */
+    private static final int INSERT = 1;
+    /**
+     * The operation code of a deletion
+     */
+    private static final int REMOVE = 2;
+    /**
+     * The operation code of a membership test
+     */
+    private static final int CONTAINS = 3;
+    /**
+     * The operation code of a retrieval
+     */
+    private static final int RETRIEVE = 4;
+    /**
+     * The number of times the combiner rescans the slots for requests
+     * published while it was applying a batch
+     */
+    private static final int PASSES = 3;
+    /**
+     * The number of times a waiting thread spins before yielding
+     */
+    private static final int SPINS = 256;
+
+    /**
+     * The tree, accessed only while holding the combiner lock
+     */
+    private final AVLTree<E> tree;
+    /**
+     * A comparator lambda function that compares two elements of the tree
+     */
+    private final Comparator<? super E> cmp;
+    /**
+     * Gives an item as its own key for probe-free searches of the tree
+     */
+    private final Function<E, E> self;
+    /**
+     * The combiner lock
+     */
+    private final AtomicBoolean lock = new AtomicBoolean();
+    /**
+     * The most recently registered slot; each slot links to the one
+     * registered before it
+     */
+    private final AtomicReference<Slot<E>> slots = new AtomicReference<>();
+    /**
+     * The slot of each thread; a slot does not refer to the tree, so the
+     * slots of a thread do not keep the trees it has used reachable
+     */
+    private final ThreadLocal<Slot<E>> mine = ThreadLocal.withInitial(this::register);
+    /**
+     * The requests of the batch being combined
+     */
+    private Slot<E>[] batch = newBatch(16);
+
+    /**
+     * A request slot owned by one thread
+     *
+     * @param <E> data type of elements of the tree
+     */
+    private static final class Slot<E> {
+        /**
+         * the operation requested, or NONE once it has been applied;
+         * writing it publishes the argument and reading NONE publishes
+         * the result
+         */
+        volatile int op;
+        /**
+         * the argument of the request
+         */
+        E arg;
+        /**
+         * the item found by a retrieval, or null
+         */
+        E result;
+        /**
+         * whether the key was found, or for a retrieval that found
+         * nothing, whether the tree was empty
+         */
+        boolean flag;
+        /**
+         * what applying the request threw, or null
+         */
+        Throwable error;
+        /**
+         * the thread that owns this slot
+         */
+        final Thread owner = Thread.currentThread();
+        /**
+         * the slot registered before this one
+         */
+        Slot<E> next;
+    }
+
+    /**
+     * Constructs an empty tree ordered by the natural ordering of its items
+     */
+    public CombiningAVLTree() {
+        this((x, y) -> x.compareTo(y));
+    }
+
+    /**
+     * A parameterized constructor that uses an externally defined comparator
+     *
+     * @param fn - a trichotomous integer value comparator function
+     */
+    public CombiningAVLTree(Comparator<? super E> fn) {
+        tree = new AVLTree<E>(fn);
+        cmp = fn;
+        self = (x) -> x;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        acquire();
+        try {
+            return tree.isEmpty();
+        } finally {
+            lock.set(false);
+        }
+    }
+
+    @Override
+    public void insert(E obj) {
+        request(INSERT, obj);
+    }
+
+    @Override
+    public boolean inTree(E item) {
+        return request(CONTAINS, item).flag;
+    }
+
+    @Override
+    public void remove(E item) {
+        request(REMOVE, item);
+    }
+
+    @Override
+    public E retrieve(E key) throws AVLTreeException {
+        Slot<E> slot = request(RETRIEVE, key);
+        E found = slot.result;
+        slot.result = null;
+        if (found != null)
+            return found;
+        if (slot.flag)
+            throw new AVLTreeException("AVL Tree Exception: tree empty on call to retrieve()");
+        throw new AVLTreeException("AVL Tree Exception: key not in tree call to retrieve()");
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // AVLTreeAPI declares traverse with a raw Function
+    public void traverse(Function func) {
+        acquire();
+        try {
+            tree.traverse(func);
+        } finally {
+            lock.set(false);
+        }
+    }
+
+    @Override
+    public int size() {
+        acquire();
+        try {
+            return tree.size();
+        } finally {
+            lock.set(false);
+        }
+    }
+
+    @Override
+    public ArrayList<String> genPaths() {
+        acquire();
+        try {
+            return tree.genPaths();
+        } finally {
+            lock.set(false);
+        }
+    }
+
+    @Override
+    public int height() {
+        acquire();
+        try {
+            return tree.height();
+        } finally {
+            lock.set(false);
+        }
+    }
+
+    @Override
+    public boolean isFibonacci() {
+        acquire();
+        try {
+            return tree.isFibonacci();
+        } finally {
+            lock.set(false);
+        }
+    }
+
+    @Override
+    public int fullCount() {
+        acquire();
+        try {
+            return tree.fullCount();
+        } finally {
+            lock.set(false);
+        }
+    }
+
+    /* private methods definitions */
+
+    /**
+     * An auxiliary method that publishes a request in the slot of the
+     * calling thread and waits until it has been applied, combining the
+     * pending requests of all threads whenever the combiner lock is free
+     *
+     * @param op  the operation code
+     * @param arg the argument of the request
+     * @return the slot holding the result
+     */
+    private Slot<E> request(int op, E arg) {
+        Slot<E> slot = mine.get();
+        slot.arg = arg;
+        slot.op = op;
+        int spins = 0;
+        while (slot.op != NONE) {
+            if (!lock.get() && lock.compareAndSet(false, true)) {
+                try {
+                    combine();
+                } finally {
+                    lock.set(false);
+                }
+            } else if (++spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        slot.arg = null;
+        Throwable error = slot.error;
+        if (error != null) {
+            slot.error = null;
+            if (error instanceof RuntimeException)
+                throw (RuntimeException) error;
+            if (error instanceof Error)
+                throw (Error) error;
+            throw new IllegalStateException(error);
+        }
+        return slot;
+    }
+
+    /**
+     * An auxiliary method that applies every pending request in batches;
+     * the caller holds the combiner lock. What a request
+     * throws is kept in its slot for its owner to rethrow.
+     */
+    private void combine() {
+        for (int pass = 0; pass < PASSES; pass++) {
+            int n = gather(pass == 0);
+            if (n == 0)
+                return;
+            for (int i = 0; i < n; i++) {
+                Slot<E> s = batch[i];
+                batch[i] = null;
+                try {
+                    switch (s.op) {
+                        case INSERT:
+                            tree.insert(s.arg);
+                            break;
+                        case REMOVE:
+                            tree.remove(s.arg);
+                            break;
+                        case CONTAINS:
+                            s.flag = tree.find(s.arg, self, cmp) != null;
+                            break;
+                        case RETRIEVE:
+                            s.result = tree.find(s.arg, self, cmp);
+                            s.flag = tree.isEmpty();
+                            break;
+                    }
+                } catch (Throwable t) {
+                    s.result = null;
+                    s.error = t;
+                }
+                s.op = NONE;
+            }
+        }
+    }
+
+    /**
+     * An auxiliary method that collects the pending requests into the
+     * batch; the caller holds the combiner lock
+     *
+     * @param prune whether to unregister the idle slots of threads that
+     *              have ended; the most recent slot always stays
+     * @return the number of requests collected
+     */
+    private int gather(boolean prune) {
+        int n = 0;
+        Slot<E> prev = null;
+        for (Slot<E> s = slots.get(); s != null; s = s.next) {
+            if (s.op != NONE) {
+                if (n == batch.length)
+                    batch = Arrays.copyOf(batch, 2 * n);
+                batch[n++] = s;
+            } else if (prune && prev != null && !s.owner.isAlive()) {
+                prev.next = s.next;
+                continue;
+            }
+            prev = s;
+        }
+        return n;
+    }
+
+    /**
+     * An auxiliary method that spins until it acquires the combiner lock
+     */
+    private void acquire() {
+        int spins = 0;
+        while (lock.get() || !lock.compareAndSet(false, true)) {
+            if (++spins < SPINS)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+    }
+
+    /**
+     * An auxiliary method that creates an empty batch
+     *
+     * @param length the capacity of the batch
+     * @return the batch
+     */
+    @SuppressWarnings("unchecked") // a generic array cannot be created directly; it only ever holds Slot<E>
+    private static <E> Slot<E>[] newBatch(int length) {
+        return (Slot<E>[]) new Slot<?>[length];
+    }
+
+    /**
+     * An auxiliary method that creates and registers the slot of the
+     * calling thread
+     *
+     * @return the new slot
+     */
+    private Slot<E> register() {
+        Slot<E> slot = new Slot<>();
+        do {
+            slot.next = slots.get();
+        } while (!slots.compareAndSet(slot.next, slot));
+        return slot;
+    }
+}
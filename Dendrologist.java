@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.util.Comparator;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 // DISCLAIMER: I DO NOT SUPPORT PEOPLE PLAGIARIZING OUR CODE. I DO NOT TAKE RESPONSIBILITY FOR THE UNLAWFUL ACTIONS OF OTHERS.
 /**
  * A testbed for an augmented implementation of an AVL tree
@@ -35,8 +37,79 @@ public class Dendrologist {
         }
 
         Comparator<String> cmp;
-        int order_code = Integer.parseInt(args[0]);
-        switch (order_code) {
+        ToLongFunction<String> key;
+        try {
+            int orderCode = Integer.parseInt(args[0]);
+            cmp = comparator(orderCode);
+            key = summary(orderCode);
+        } catch (IllegalArgumentException e) {
+            System.out.println(usage);
+            throw new IllegalArgumentException("First argument not valid.");
+        }
+        Scanner scan;
+        try {
+            File input = new File(args[1]);
+            scan = new Scanner(input);
+
+        } catch (Exception e) {
+            System.out.println(usage);
+            throw new IOException("File not valid.");
+        }
+
+        AVLTree<String> words = new AVLTree<>(cmp, key);
+        String str;
+
+        while (scan.hasNextLine()) {
+            str = scan.nextLine();
+            String[] strings = str.split(" ");//str[0] is command str[1] is command paramter. It's seperated by spaces
+            switch (strings[0]) {
+                case "insert":
+                    String inserted = strings[1];
+                    words.insert(inserted);
+                    System.out.println("Inserted: " + inserted);
+                    break;
+                case "stats":
+                    System.out.printf("Stats: size = %d, height = %d, #full-nodes = %d, fibonacci? = %b%n", words.size(), words.height(), words.fullCount(), words.isFibonacci());
+                    break;
+                case "traverse":
+                    System.out.println("In-Order Traversal:");
+                    words.traverse((x) -> {
+                        System.out.println(x.toString());
+                        return null;
+                    });
+                    break;
+                case "paths":
+                    ArrayList<String> list = words.genPaths();
+                    System.out.println("Root-to-Leaf Paths:" + list.size());
+                    for (int i = 0; i < list.size(); i++) {
+                        System.out.println(list.get(i));
+                    }
+                    break;
+                case "delete":
+                    String removed = strings[1];
+                    if (words.inTree(removed)) {
+                        System.out.println("Deleted: " + removed);
+                        words.remove(removed);
+                    } else {
+                        System.out.println(removed + " is not in the tree");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Parsing Error.");
+            }
+        }
+    }
+
+    /**
+     * Gives the string comparator for an order code
+     *
+     * @param orderCode one of the order codes -3 through 3 described in the usage
+     * @return the comparator for the order code
+     * @throws IllegalArgumentException when the order code is not valid
+     */
+    public static Comparator<String> comparator(int orderCode) {
+        Comparator<String> cmp;
+        switch (orderCode) {
             case -3:
                 cmp = (String t, String t1) -> {
                     if (t.length() > t1.length())
@@ -93,60 +166,99 @@ public class Dendrologist {
                 };
                 break;
             default:
-                System.out.println(usage);
-                throw new IllegalArgumentException("First argument not valid.");
+                throw new IllegalArgumentException("Order code not valid: " + orderCode);
         }
-        Scanner scan;
-        try {
-            File input = new File(args[1]);
-            scan = new Scanner(input);
+        return cmp;
+    }
 
-        } catch (Exception e) {
-            System.out.println(usage);
-            throw new IOException("File not valid.");
+    /**
+     * Gives an order-preserving key summary for the comparator of an order
+     * code. The summary packs the string length, capped at 65535, into the
+     * top 16 bits and the leading characters into the rest, so that most
+     * comparisons are settled by comparing two longs. A string too long for
+     * the length field, or characters beyond those packed, give equal
+     * summaries and leave the decision to the comparator.
+     *
+     * @param orderCode one of the order codes -3 through 3 described in the usage
+     * @return the key summary for the order code
+     * @throws IllegalArgumentException when the order code is not valid
+     */
+    public static ToLongFunction<String> summary(int orderCode) {
+        switch (orderCode) {
+            case -3:
+                return (String t) -> ~lengthAndPrefix(t, false);
+            case -2:
+                return (String t) -> -(long) t.length();
+            case -1:
+                return (String t) -> ~prefix(t);
+            case 0:
+                return (String t) -> lengthAndPrefix(t, true);
+            case 1:
+                return (String t) -> prefix(t);
+            case 2:
+                return (String t) -> t.length();
+            case 3:
+                return (String t) -> lengthAndPrefix(t, false);
+            default:
+                throw new IllegalArgumentException("Order code not valid: " + orderCode);
         }
+    }
 
-        AVLTree<String> words = new AVLTree<>(cmp);
-        String str;
-
-        while (scan.hasNextLine()) {
-            str = scan.nextLine();
-            String[] strings = str.split(" ");//str[0] is command str[1] is command paramter. It's seperated by spaces
-            switch (strings[0]) {
-                case "insert":
-                    String inserted = strings[1];
-                    words.insert(inserted);
-                    System.out.println("Inserted: " + inserted);
-                    break;
-                case "stats":
-                    System.out.printf("Stats: size = %d, height = %d, #full-nodes = %d, fibonacci? = %b%n", words.size(), words.height(), words.fullCount(), words.isFibonacci());
-                    break;
-                case "traverse":
-                    System.out.println("In-Order Traversal:");
-                    words.traverse((x) -> {
-                        System.out.println(x.toString());
-                        return null;
-                    });
-                    break;
-                case "paths":
-                    ArrayList<String> list = words.genPaths();
-                    System.out.println("Root-to-Leaf Paths:" + list.size());
-                    for (int i = 0; i < list.size(); i++) {
-                        System.out.println(list.get(i));
-                    }
-                    break;
-                case "delete":
-                    String removed = strings[1];
-                    if (words.inTree(removed)) {
-                        System.out.println("Deleted: " + removed);
-                        words.remove(removed);
-                    } else {
-                        System.out.println(removed + " is not in the tree");
-                    }
-                    break;
-                default:
-                    throw new IllegalArgumentException("Parsing Error.");
-            }
+    /**
+     * Gives a hash function that agrees with the comparator of an order
+     * code: strings the comparator finds equal have equal hashes
+     *
+     * @param orderCode one of the order codes -3 through 3 described in the usage
+     * @return the hash function for the order code
+     * @throws IllegalArgumentException when the order code is not valid
+     */
+    public static ToIntFunction<String> hash(int orderCode) {
+        switch (orderCode) {
+            case -2:
+            case 2:
+                return (String t) -> t.length();
+            case -3:
+            case -1:
+            case 0:
+            case 1:
+            case 3:
+                return (String t) -> t.hashCode();
+            default:
+                throw new IllegalArgumentException("Order code not valid: " + orderCode);
         }
     }
+
+    /**
+     * Packs the first four characters of a string, padded with zeros, into
+     * a long whose signed order agrees with lexicographical order
+     *
+     * @param t a string
+     * @return the packed characters
+     */
+    private static long prefix(String t) {
+        long bits = 0;
+        for (int i = 0; i < 4; i++)
+            bits = (bits << 16) | (i < t.length() ? t.charAt(i) : 0);
+        return bits ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Packs the length of a string and its first three characters into a
+     * long whose signed order agrees with ordering by length and then
+     * lexicographically, or reverse lexicographically
+     *
+     * @param t       a string
+     * @param reverse whether equal lengths are in reverse lexicographical order
+     * @return the packed length and characters
+     */
+    private static long lengthAndPrefix(String t, boolean reverse) {
+        if (t.length() >= 0xFFFF)
+            return 0xFFFFL << 48 ^ Long.MIN_VALUE;
+        long bits = t.length();
+        for (int i = 0; i < 3; i++)
+            bits = (bits << 16) | (i < t.length() ? t.charAt(i) : 0);
+        if (reverse)
+            bits ^= 0xFFFFFFFFFFFFL;
+        return bits ^ Long.MIN_VALUE;
+    }
 }
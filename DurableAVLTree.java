@@ -0,0 +1,484 @@
+package dendrologist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An AVL tree whose mutations are recorded in an append-only binary
+ * write-ahead log. The log is forced to disk in groups of records and the
+ * tree is periodically checkpointed so that the log can be discarded.
+ * Constructing a durable tree recovers its contents from the latest
+ * checkpoint followed by the tail of the log.
+ * <pre>
+ * Log record:  [int length][byte op][length bytes of element][int crc32]
+ * Checkpoint:  [int magic][long generation][snapshot of the tree]
+ * </pre>
+ * A log record is durable once the group it belongs to has been forced;
+ * with a group size of n, a crash may lose at most the last n - 1 writes
+ * unless {@link #sync()} is called explicitly.
+ *
+ * @param <E> data type of elements of the tree
+ * @see AVLTree
+ * @see ElementCodec
+ * @see AVLTreeSnapshot
+ */
+public class DurableAVLTree<E extends Comparable<E>> implements AVLTreeAPI<E>, Closeable {
+    /**
+     * Identifies a checkpoint file
+     */
+    private static final int CHECKPOINT_MAGIC = 0x41564C43;
+    /**
+     * The name of the current checkpoint file
+     */
+    private static final String CHECKPOINT = "checkpoint";
+    /**
+     * The name of a checkpoint that is still being written
+     */
+    private static final String CHECKPOINT_TMP = "checkpoint.tmp";
+    /**
+     * The prefix of the name of every log file; the suffix is its generation
+     */
+    private static final String WAL_PREFIX = "wal.";
+    /**
+     * The log record operation code for an insertion
+     */
+    private static final byte OP_INSERT = 1;
+    /**
+     * The log record operation code for a deletion
+     */
+    private static final byte OP_REMOVE = 2;
+    /**
+     * The largest element, in bytes, that a log record may hold
+     */
+    private static final int MAX_RECORD = 1 << 24;
+    /**
+     * The size of the buffer in which records await a group commit
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The in-memory tree
+     */
+    private final AVLTree<E> tree;
+    /**
+     * The directory holding the checkpoint and the log files
+     */
+    private final Path dir;
+    /**
+     * Converts elements to and from bytes
+     */
+    private final ElementCodec<E> codec;
+    /**
+     * The number of records written before the log is forced
+     */
+    private final int groupCommit;
+    /**
+     * The number of records written before a checkpoint is taken;
+     * 0 disables automatic checkpoints
+     */
+    private final long checkpointEvery;
+    /**
+     * Records that have not yet been written to the log
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Computes the checksum of each log record
+     */
+    private final CRC32 crc;
+    /**
+     * The log file currently being appended to
+     */
+    private FileChannel wal;
+    /**
+     * The generation of the current log file
+     */
+    private long generation;
+    /**
+     * The number of records appended since the log was last forced
+     */
+    private int unsynced;
+    /**
+     * The number of records appended since the last checkpoint
+     */
+    private long sinceCheckpoint;
+
+    /**
+     * Opens a durable tree in the specified directory, recovering whatever
+     * was previously stored there.
+     *
+     * @param dir             the directory holding the checkpoint and the log
+     * @param fn              a trichotomous integer value comparator function
+     * @param codec           converts elements to and from bytes
+     * @param groupCommit     the number of records written between calls to
+     *                        force the log; 1 forces every write
+     * @param checkpointEvery the number of records written between
+     *                        checkpoints; 0 disables automatic checkpoints
+     * @throws IOException when the directory cannot be read or written
+     */
+    public DurableAVLTree(Path dir, Comparator<? super E> fn, ElementCodec<E> codec,
+                          int groupCommit, long checkpointEvery) throws IOException {
+        if (groupCommit < 1)
+            throw new IllegalArgumentException("groupCommit must be positive");
+        if (checkpointEvery < 0)
+            throw new IllegalArgumentException("checkpointEvery must not be negative");
+        this.tree = new AVLTree<E>(fn);
+        this.dir = dir;
+        this.codec = codec;
+        this.groupCommit = groupCommit;
+        this.checkpointEvery = checkpointEvery;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.crc = new CRC32();
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    @Override
+    public void insert(E obj) {
+        byte[] bytes = encode(obj);
+        tree.insert(obj);
+        append(OP_INSERT, bytes);
+        written();
+    }
+
+    @Override
+    public boolean inTree(E item) {
+        return tree.inTree(item);
+    }
+
+    @Override
+    public void remove(E item) {
+        if (!tree.inTree(item))
+            return;
+        byte[] bytes = encode(item);
+        tree.remove(item);
+        append(OP_REMOVE, bytes);
+        written();
+    }
+
+    @Override
+    public E retrieve(E key) throws AVLTreeException {
+        return tree.retrieve(key);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // AVLTreeAPI declares traverse with a raw Function
+    public void traverse(Function func) {
+        tree.traverse(func);
+    }
+
+    @Override
+    public int size() {
+        return tree.size();
+    }
+
+    @Override
+    public ArrayList<String> genPaths() {
+        return tree.genPaths();
+    }
+
+    @Override
+    public int height() {
+        return tree.height();
+    }
+
+    @Override
+    public boolean isFibonacci() {
+        return tree.isFibonacci();
+    }
+
+    @Override
+    public int fullCount() {
+        return tree.fullCount();
+    }
+
+    /**
+     * Writes every buffered record to the log and forces it to disk.
+     *
+     * @throws IOException when the log cannot be written
+     */
+    public void sync() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            wal.write(buffer);
+        buffer.clear();
+        wal.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Writes the tree to a new checkpoint and discards the log records
+     * that the checkpoint makes redundant.
+     *
+     * @throws IOException when the checkpoint or the log cannot be written
+     */
+    public void checkpoint() throws IOException {
+        sync();
+        long next = generation + 1;
+        Path tmp = dir.resolve(CHECKPOINT_TMP);
+        writeCheckpoint(tmp, next);
+        Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+        wal.close();
+        for (long gen : walGenerations())
+            if (gen < next)
+                Files.deleteIfExists(walPath(gen));
+        generation = next;
+        wal = FileChannel.open(walPath(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        sinceCheckpoint = 0;
+    }
+
+    /**
+     * Forces any buffered records to disk and closes the log.
+     *
+     * @throws IOException when the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (wal.isOpen()) {
+            sync();
+            wal.close();
+        }
+    }
+
+    /* private methods definitions */
+
+    /**
+     * An auxiliary method that encodes an element for a log record
+     *
+     * @param item the element to be encoded
+     * @return the encoded element
+     * @throws IllegalArgumentException when the element is too large for a record
+     */
+    private byte[] encode(E item) {
+        byte[] bytes = codec.encode(item);
+        if (bytes.length > MAX_RECORD)
+            throw new IllegalArgumentException("element too large for the log: " + bytes.length + " bytes");
+        return bytes;
+    }
+
+    /**
+     * An auxiliary method that appends a record to the group commit buffer.
+     * A record is appended only after its operation has been applied to the
+     * tree, so an operation that throws is never logged and recovery never
+     * replays it.
+     *
+     * @param op    the operation code of the record
+     * @param bytes the encoded element the operation applies to
+     */
+    private void append(byte op, byte[] bytes) {
+        crc.reset();
+        crc.update(op);
+        crc.update(bytes);
+        try {
+            int size = bytes.length + 9;
+            if (buffer.remaining() < size) {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    wal.write(buffer);
+                buffer.clear();
+            }
+            if (buffer.remaining() < size) {
+                ByteBuffer large = ByteBuffer.allocate(size);
+                large.putInt(bytes.length).put(op).put(bytes).putInt((int) crc.getValue()).flip();
+                while (large.hasRemaining())
+                    wal.write(large);
+            } else {
+                buffer.putInt(bytes.length).put(op).put(bytes).putInt((int) crc.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * An auxiliary method that completes a logged write, committing the
+     * group and taking a checkpoint when they are due
+     */
+    private void written() {
+        try {
+            if (++unsynced >= groupCommit)
+                sync();
+            if (checkpointEvery > 0 && ++sinceCheckpoint >= checkpointEvery)
+                checkpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * An auxiliary method that loads the latest checkpoint, replays every
+     * later log file and reopens the newest log for appending
+     *
+     * @throws IOException when the checkpoint or a log file cannot be read
+     */
+    private void recover() throws IOException {
+        Files.deleteIfExists(dir.resolve(CHECKPOINT_TMP));
+        long first = 0;
+        Path checkpoint = dir.resolve(CHECKPOINT);
+        if (Files.exists(checkpoint))
+            first = readCheckpoint(checkpoint);
+        generation = first;
+        long valid = 0;
+        for (long gen : walGenerations()) {
+            if (gen < first) {
+                Files.deleteIfExists(walPath(gen));
+            } else {
+                valid = replay(walPath(gen));
+                generation = gen;
+            }
+        }
+        wal = FileChannel.open(walPath(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        /* discard a record torn by a crash */
+        wal.truncate(valid);
+        wal.position(valid);
+    }
+
+    /**
+     * An auxiliary method that applies the records of a log file to the tree
+     *
+     * @param path the log file
+     * @return the length of the prefix of the file holding intact records
+     * @throws IOException when the file cannot be read
+     */
+    private long replay(Path path) throws IOException {
+        long valid = 0;
+        byte[] bytes = new byte[256];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_RECORD)
+                    break;
+                byte op = in.readByte();
+                if (bytes.length < length)
+                    bytes = new byte[Math.max(length, 2 * bytes.length)];
+                in.readFully(bytes, 0, length);
+                int check = in.readInt();
+                crc.reset();
+                crc.update(op);
+                crc.update(bytes, 0, length);
+                if (check != (int) crc.getValue())
+                    break;
+                E item = codec.decode(bytes, 0, length);
+                if (op == OP_INSERT)
+                    tree.insert(item);
+                else if (op == OP_REMOVE)
+                    tree.remove(item);
+                else
+                    break;
+                valid += length + 9;
+            }
+        } catch (EOFException e) {
+            /* the last record is incomplete */
+        }
+        return valid;
+    }
+
+    /**
+     * An auxiliary method that writes the tree to a checkpoint file and
+     * forces it to disk
+     *
+     * @param path       the checkpoint file
+     * @param generation the first log generation not covered by the checkpoint
+     * @throws IOException when the file cannot be written
+     */
+    private void writeCheckpoint(Path path, long generation) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(path.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeLong(generation);
+            AVLTreeSnapshot.write(tree, out, codec, true, AVLTreeSnapshot.DEFAULT_CHUNK_SIZE);
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * An auxiliary method that loads the tree from a checkpoint file
+     *
+     * @param path the checkpoint file
+     * @return the first log generation not covered by the checkpoint
+     * @throws IOException when the file cannot be read or is corrupt
+     */
+    private long readCheckpoint(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC)
+                throw new IOException("not a checkpoint: " + path);
+            long gen = in.readLong();
+            AVLTreeSnapshot.load(tree, in, codec);
+            return gen;
+        }
+    }
+
+    /**
+     * An auxiliary method that lists the generations of the log files
+     * in the directory in increasing order
+     *
+     * @return the generations of the log files
+     * @throws IOException when the directory cannot be read
+     */
+    private ArrayList<Long> walGenerations() throws IOException {
+        ArrayList<Long> gens = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach((p) -> {
+                String name = p.getFileName().toString();
+                if (name.startsWith(WAL_PREFIX)) {
+                    try {
+                        gens.add(Long.parseLong(name.substring(WAL_PREFIX.length())));
+                    } catch (NumberFormatException e) {
+                        /* not a log file */
+                    }
+                }
+            });
+        }
+        Collections.sort(gens);
+        return gens;
+    }
+
+    /**
+     * An auxiliary method that gives the path of a log file
+     *
+     * @param gen the generation of the log file
+     * @return the path of the log file
+     */
+    private Path walPath(long gen) {
+        return dir.resolve(WAL_PREFIX + gen);
+    }
+
+    /**
+     * An auxiliary method that forces the directory entry of a renamed
+     * checkpoint to disk where the platform allows it
+     */
+    private void syncDirectory() {
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException e) {
+            /* not supported on this platform */
+        }
+    }
+}
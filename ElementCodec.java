@@ -0,0 +1,45 @@
+package dendrologist;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts the elements of an AVL tree to and from bytes so that they can
+ * be written to durable storage.
+ *
+ * @param <E> data type of the elements being encoded
+ * @see DurableAVLTree
+ */
+public interface ElementCodec<E> {
+    /**
+     * A codec for strings using the UTF-8 character encoding
+     */
+    ElementCodec<String> UTF8 = new ElementCodec<String>() {
+        @Override
+        public byte[] encode(String item) {
+            return item.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes, int offset, int length) {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Encodes an element.
+     *
+     * @param item the element to be encoded
+     * @return the bytes representing the element
+     */
+    byte[] encode(E item);
+
+    /**
+     * Decodes an element from a range of a byte array.
+     *
+     * @param bytes  the array holding the encoded element
+     * @param offset the index of the first byte of the element
+     * @param length the number of bytes in the encoded element
+     * @return the decoded element
+     */
+    E decode(byte[] bytes, int offset, int length);
+}
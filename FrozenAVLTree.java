@@ -0,0 +1,159 @@
+package dendrologist;
+
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * An immutable copy of an AVL tree laid out in an array in Eytzinger
+ * (breadth-first) order: the children of the item at index k are at
+ * indexes 2k and 2k + 1. A search touches the front of the array, which
+ * stays in cache, and the position of the next probe is computed rather
+ * than loaded from a node, so the descent has no data-dependent branch.
+ * <p>
+ * Java offers no software prefetch. In this layout, though, the
+ * descendants of an item four levels down are 16 adjacent references,
+ * about one cache line when references are compressed; the array header
+ * and the alignment of the array decide whether a block spans two.
+ *
+ * @param <E> data type of elements of the tree
+ * @see AVLTree#freeze()
+ */
+public class FrozenAVLTree<E extends Comparable<E>> {
+    /**
+     * The items in Eytzinger order; index 0 is unused
+     */
+    private final Object[] items;
+    /**
+     * The number of items
+     */
+    private final int count;
+    /**
+     * The comparator of the tree this copy was made from
+     */
+    private final Comparator<? super E> cmp;
+
+    /**
+     * Lays out the specified items in Eytzinger order
+     *
+     * @param sorted the items in increasing order under the comparator
+     * @param fn     a trichotomous integer value comparator function
+     */
+    FrozenAVLTree(Object[] sorted, Comparator<? super E> fn) {
+        count = sorted.length;
+        items = new Object[count + 1];
+        cmp = fn;
+        place(sorted, 0, 1);
+    }
+
+    /**
+     * Determine whether an item is in the tree.
+     *
+     * @param item item with a specified search key.
+     * @return true on success; false on failure.
+     */
+    public boolean inTree(E item) {
+        return find(item) != 0;
+    }
+
+    /**
+     * returns the item with the given search key.
+     *
+     * @param key the key of the item to be retrieved
+     * @return the item with the specified key
+     * @throws AVLTreeException when no such element exists
+     */
+    public E retrieve(E key) throws AVLTreeException {
+        if (count == 0)
+            throw new AVLTreeException("AVL Tree Exception: tree empty on call to retrieve()");
+        int k = find(key);
+        if (k == 0)
+            throw new AVLTreeException("AVL Tree Exception: key not in tree call to retrieve()");
+        return item(k);
+    }
+
+    /**
+     * This function traverses the tree in in-order
+     * and calls the function Visit once for each node.
+     *
+     * @param func the function to apply to the data in each node
+     */
+    @SuppressWarnings("rawtypes") // matches the raw Function that AVLTreeAPI.traverse takes
+    public void traverse(Function func) {
+        traverse(1, func);
+    }
+
+    /**
+     * Returns the number of items stored in the tree.
+     *
+     * @return the size of the tree.
+     */
+    public int size() {
+        return count;
+    }
+
+    /* private methods definitions */
+
+    /**
+     * An auxiliary method that copies sorted items into the subtree rooted
+     * at the specified index by an in-order walk of the implicit tree
+     *
+     * @param sorted the items in increasing order
+     * @param next   the index in sorted of the next item to place
+     * @param k      the index of the root of the subtree
+     * @return the index in sorted of the next item to place afterwards
+     */
+    private int place(Object[] sorted, int next, int k) {
+        if (k <= count) {
+            next = place(sorted, next, 2 * k);
+            items[k] = sorted[next++];
+            next = place(sorted, next, 2 * k + 1);
+        }
+        return next;
+    }
+
+    /**
+     * An auxiliary method that gives the item at the specified index
+     *
+     * @param k the index of an item
+     * @return the item at the index
+     */
+    @SuppressWarnings("unchecked") // items holds only elements of type E, placed by the constructor
+    private E item(int k) {
+        return (E) items[k];
+    }
+
+    /**
+     * An auxiliary method that finds the index of the specified key. The
+     * descent always runs to the bottom of the implicit tree, moving right
+     * past every item less than the key; the last item it did not move
+     * right past is the smallest item not less than the key.
+     *
+     * @param key the key to be found
+     * @return the index of the key, or 0 if it is not in the tree
+     */
+    private int find(E key) {
+        int k = 1;
+        while (k <= count)
+            k = 2 * k + (cmp.compare(item(k), key) >>> 31);
+        /* undo the right moves made after the last left move */
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        if (k == 0 || cmp.compare(item(k), key) != 0)
+            return 0;
+        return k;
+    }
+
+    /**
+     * An auxiliary method that in-order traverses the subtree at the specified index
+     *
+     * @param k    the index of the root of a subtree
+     * @param func the function to be applied to the data in each node
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"}) // matches the raw Function that AVLTreeAPI.traverse takes
+    private void traverse(int k, Function func) {
+        if (k <= count) {
+            traverse(2 * k, func);
+            func.apply(items[k]);
+            traverse(2 * k + 1, func);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package dendrologist;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * An AVL tree of closed intervals that answers overlap and stabbing
+ * queries. Intervals are ordered by start point, and each node also keeps
+ * the largest end point in its subtree, maintained through rotations and
+ * retracing. A query skips every subtree that ends before the query
+ * interval and every subtree that starts after it, so it visits
+ * O(log n + k log n) nodes in the worst case and O(log n + k) on typical
+ * data, where k is the number of intervals reported.
+ *
+ * @param <E> data type of elements of the tree
+ * @see AVLTree
+ */
+public class IntervalTree<E extends Comparable<E>> implements AVLTreeAPI<E> {
+    /**
+     * The tree of intervals
+     */
+    private final AVLTree<E> tree;
+    /**
+     * Gives the start point of the interval of an element
+     */
+    private final ToLongFunction<? super E> low;
+    /**
+     * Gives the end point of the interval of an element
+     */
+    private final ToLongFunction<? super E> high;
+
+    /**
+     * Constructs an empty tree of intervals; intervals with equal start
+     * points are ordered by their natural ordering
+     *
+     * @param low  - gives the start point of the interval of an element
+     * @param high - gives the end point of the interval of an element
+     */
+    public IntervalTree(ToLongFunction<? super E> low, ToLongFunction<? super E> high) {
+        this(low, high, (x, y) -> x.compareTo(y));
+    }
+
+    /**
+     * Constructs an empty tree of intervals; intervals with equal start
+     * points are ordered by an externally defined comparator
+     *
+     * @param low  - gives the start point of the interval of an element
+     * @param high - gives the end point of the interval of an element
+     * @param fn   - a trichotomous integer value comparator function that
+     *             orders intervals with equal start points
+     */
+    public IntervalTree(ToLongFunction<? super E> low, ToLongFunction<? super E> high, Comparator<? super E> fn) {
+        this.low = low;
+        this.high = high;
+        Comparator<E> byStart = (x, y) -> {
+            int d = Long.compare(low.applyAsLong(x), low.applyAsLong(y));
+            return d != 0 ? d : fn.compare(x, y);
+        };
+        tree = new AVLTree<>(byStart, low, high);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    /**
+     * Inserts an interval into the tree.
+     *
+     * @param obj the interval to be inserted.
+     * @throws IllegalArgumentException when the interval ends before it starts
+     */
+    @Override
+    public void insert(E obj) {
+        if (low.applyAsLong(obj) > high.applyAsLong(obj))
+            throw new IllegalArgumentException("interval ends before it starts: " + obj);
+        tree.insert(obj);
+    }
+
+    @Override
+    public boolean inTree(E item) {
+        return tree.inTree(item);
+    }
+
+    @Override
+    public void remove(E item) {
+        tree.remove(item);
+    }
+
+    @Override
+    public E retrieve(E key) throws AVLTreeException {
+        return tree.retrieve(key);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // AVLTreeAPI declares traverse with a raw Function
+    public void traverse(Function func) {
+        tree.traverse(func);
+    }
+
+    @Override
+    public int size() {
+        return tree.size();
+    }
+
+    @Override
+    public ArrayList<String> genPaths() {
+        return tree.genPaths();
+    }
+
+    @Override
+    public int height() {
+        return tree.height();
+    }
+
+    @Override
+    public boolean isFibonacci() {
+        return tree.isFibonacci();
+    }
+
+    @Override
+    public int fullCount() {
+        return tree.fullCount();
+    }
+
+    /**
+     * Passes each interval that overlaps [a, b] to an action as it is
+     * found, in increasing order of start point.
+     *
+     * @param a      the start point of the query interval
+     * @param b      the end point of the query interval
+     * @param action receives each overlapping interval
+     */
+    public void overlaps(long a, long b, Consumer<? super E> action) {
+        if (a <= b)
+            tree.overlapping(a, b, action);
+    }
+
+    /**
+     * Gives the intervals that overlap [a, b].
+     *
+     * @param a the start point of the query interval
+     * @param b the end point of the query interval
+     * @return the overlapping intervals in increasing order of start point
+     */
+    public ArrayList<E> overlaps(long a, long b) {
+        ArrayList<E> found = new ArrayList<>();
+        overlaps(a, b, found::add);
+        return found;
+    }
+
+    /**
+     * Passes each interval that contains a point to an action as it is
+     * found, in increasing order of start point.
+     *
+     * @param point  the point
+     * @param action receives each interval containing the point
+     */
+    public void stab(long point, Consumer<? super E> action) {
+        tree.overlapping(point, point, action);
+    }
+}
@@ -0,0 +1,31 @@
+package dendrologist;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmarks of AVLTreeWriteBenchmark on trees of 1M and 10M keys,
+ * in a single fork with fewer iterations.
+ *
+ * @see AVLTreeWriteBenchmark
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class AVLTreeLargeWriteBenchmark extends AVLTreeWriteBenchmark {
+    /**
+     * The number of keys inserted into the tree
+     */
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Override
+    protected int size() {
+        return size;
+    }
+}
@@ -0,0 +1,189 @@
+package dendrologist;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of every AVLTreeAPI operation for each Dendrologist order
+ * code, key distribution and tree size from 1K to 100K keys;
+ * AVLTreeLargeOpsBenchmark covers 1M and 10M keys. Insertion and removal
+ * are measured one at a time by AVLTreeWriteBenchmark.
+ * <pre>
+ * mvn -B package
+ * java -jar benchmarks/target/benchmarks.jar 'AVLTree.*Benchmark' -rf json -rff avl.json
+ * java -jar benchmarks/target/benchmarks.jar AVLTreeOpsBenchmark -p orderCode=3 -rf json
+ * </pre>
+ *
+ * @see AVLTree
+ * @see TreeFixture
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AVLTreeOpsBenchmark {
+    /**
+     * The number of keys inserted into the tree
+     */
+    @Param({"1000", "10000", "100000"})
+    public int size;
+    /**
+     * The distribution of the keys: sequential, random or zipfian
+     */
+    @Param({"sequential", "random", "zipfian"})
+    public String distribution;
+    /**
+     * The Dendrologist order code of the comparator
+     */
+    @Param({"-3", "-2", "-1", "0", "1", "2", "3"})
+    public int orderCode;
+
+    /**
+     * The tree under measurement
+     */
+    private AVLTree<String> tree;
+    /**
+     * The comparator of the tree
+     */
+    private Comparator<String> cmp;
+    /**
+     * The keys inserted into the tree
+     */
+    private String[] keys;
+    /**
+     * The keys searched for
+     */
+    private String[] probes;
+    /**
+     * Keys that are not in the tree, inserted and removed again by insertRemove
+     */
+    private String[] extras;
+    /**
+     * The index of the next probe
+     */
+    private int nextProbe;
+    /**
+     * The index of the next extra key
+     */
+    private int nextExtra;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TreeFixture fixture = new TreeFixture(distribution, size(), orderCode);
+        cmp = fixture.cmp;
+        keys = fixture.keys;
+        probes = fixture.probes;
+        extras = fixture.extras;
+        tree = fixture.tree;
+    }
+
+    /**
+     * Gives the number of keys inserted into the tree
+     *
+     * @return the size parameter of this benchmark
+     */
+    protected int size() {
+        return size;
+    }
+
+    @Benchmark
+    public boolean inTree() {
+        return tree.inTree(nextProbe());
+    }
+
+    @Benchmark
+    public String retrieve() {
+        try {
+            return tree.retrieve(nextProbe());
+        } catch (AVLTreeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Inserts a key that is not in the tree and removes it again, so the
+     * tree holds the keys it was built with at every call; unlike
+     * AVLTreeWriteBenchmark it has no per-call fixture to time around
+     */
+    @Benchmark
+    public int insertRemove() {
+        String key = extras[nextExtra];
+        if (++nextExtra == extras.length)
+            nextExtra = 0;
+        tree.insert(key);
+        tree.remove(key);
+        return tree.size();
+    }
+
+    /**
+     * Builds a tree from all of the keys, one insertion at a time
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public AVLTree<String> build() {
+        AVLTree<String> built = new AVLTree<>(cmp);
+        for (String key : keys)
+            built.insert(key);
+        return built;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void traverse(Blackhole bh) {
+        tree.traverse((x) -> {
+            bh.consume(x);
+            return null;
+        });
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ArrayList<String> genPaths() {
+        return tree.genPaths();
+    }
+
+    @Benchmark
+    public int height() {
+        return tree.height();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int fullCount() {
+        return tree.fullCount();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean isFibonacci() {
+        return tree.isFibonacci();
+    }
+
+    /**
+     * An auxiliary method that gives the next key to search for
+     *
+     * @return a probe key
+     */
+    private String nextProbe() {
+        String probe = probes[nextProbe];
+        if (++nextProbe == probes.length)
+            nextProbe = 0;
+        return probe;
+    }
+}
@@ -0,0 +1,123 @@
+package dendrologist;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * JMH benchmarks of a single insertion and a single removal for each
+ * Dendrologist order code, key distribution and tree size from 1K to 100K
+ * keys; AVLTreeLargeWriteBenchmark covers 1M and 10M keys. Before each
+ * call a key absent from the tree is chosen, and inserted first when the
+ * call removes it; after each call the key is removed again, so every
+ * call sees a tree holding the keys it was built with. These per-call
+ * fixtures are not timed, but timing each call separately adds the
+ * overhead of reading the clock, tens of nanoseconds, which
+ * AVLTreeOpsBenchmark.insertRemove avoids.
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar 'AVLTree.*WriteBenchmark' -rf json -rff writes.json
+ * </pre>
+ *
+ * @see AVLTree
+ * @see TreeFixture
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AVLTreeWriteBenchmark {
+    /**
+     * The number of keys inserted into the tree
+     */
+    @Param({"1000", "10000", "100000"})
+    public int size;
+    /**
+     * The distribution of the keys: sequential, random or zipfian
+     */
+    @Param({"sequential", "random", "zipfian"})
+    public String distribution;
+    /**
+     * The Dendrologist order code of the comparator
+     */
+    @Param({"-3", "-2", "-1", "0", "1", "2", "3"})
+    public int orderCode;
+
+    /**
+     * The tree under measurement
+     */
+    private AVLTree<String> tree;
+    /**
+     * Keys that are not in the tree
+     */
+    private String[] extras;
+    /**
+     * The index of the next extra key
+     */
+    private int nextExtra;
+    /**
+     * The key of the current call
+     */
+    private String key;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TreeFixture fixture = new TreeFixture(distribution, size(), orderCode);
+        tree = fixture.tree;
+        extras = fixture.extras;
+    }
+
+    /**
+     * Chooses the key of the next call, inserting it when the call removes it
+     *
+     * @param params the parameters of the running benchmark
+     */
+    @Setup(Level.Invocation)
+    public void choose(BenchmarkParams params) {
+        key = extras[nextExtra];
+        if (++nextExtra == extras.length)
+            nextExtra = 0;
+        if (params.getBenchmark().endsWith(".remove"))
+            tree.insert(key);
+    }
+
+    /**
+     * Removes the key of the last call, if it is still in the tree
+     */
+    @TearDown(Level.Invocation)
+    public void restore() {
+        tree.remove(key);
+    }
+
+    /**
+     * Gives the number of keys inserted into the tree
+     *
+     * @return the size parameter of this benchmark
+     */
+    protected int size() {
+        return size;
+    }
+
+    @Benchmark
+    public void insert() {
+        tree.insert(key);
+    }
+
+    @Benchmark
+    public void remove() {
+        tree.remove(key);
+    }
+}
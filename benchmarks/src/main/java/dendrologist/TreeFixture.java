@@ -0,0 +1,81 @@
+package dendrologist;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * The keys and the tree measured by the benchmarks of AVLTree operations.
+ * The keys are the base-36 numerals of 0..size-1 drawn as
+ * AVLTreeBenchmark.keys draws them; probes are a second draw of the same
+ * distribution, or a shuffle for sequential keys.
+ *
+ * @see AVLTreeOpsBenchmark
+ * @see AVLTreeWriteBenchmark
+ */
+final class TreeFixture {
+    /**
+     * The largest number of keys kept for insertion
+     */
+    private static final int MAX_EXTRAS = 1 << 16;
+
+    /**
+     * The comparator of the tree
+     */
+    final Comparator<String> cmp;
+    /**
+     * The keys inserted into the tree
+     */
+    final String[] keys;
+    /**
+     * The keys searched for
+     */
+    final String[] probes;
+    /**
+     * Keys that are not in the tree under its comparator
+     */
+    final String[] extras;
+    /**
+     * The tree holding the keys
+     */
+    final AVLTree<String> tree;
+
+    /**
+     * Builds the keys and the tree
+     *
+     * @param distribution the distribution of the keys: sequential, random or zipfian
+     * @param size         the number of keys
+     * @param orderCode    the Dendrologist order code of the comparator
+     */
+    TreeFixture(String distribution, int size, int orderCode) {
+        keys = AVLTreeBenchmark.keys(distribution, size, 42);
+        probes = AVLTreeBenchmark.keys(distribution.equals("sequential") ? "random" : distribution, size, 43);
+        cmp = Dendrologist.comparator(orderCode);
+        tree = new AVLTree<>(cmp);
+        for (String key : keys)
+            tree.insert(key);
+        extras = absent(tree, size);
+    }
+
+    /**
+     * An auxiliary method that gives keys that are not in the tree. The
+     * numerals from size upward may equal keys of the tree under the
+     * comparators that order by length alone, so they are filtered, and
+     * a key longer than every numeral always qualifies.
+     *
+     * @param tree the tree
+     * @param size the number of keys in the tree
+     * @return at least one key, each absent from the tree
+     */
+    private static String[] absent(AVLTree<String> tree, int size) {
+        ArrayList<String> extras = new ArrayList<>();
+        int n = Math.min(size, MAX_EXTRAS);
+        for (int i = 0; i < n; i++) {
+            String key = Integer.toString(size + i, 36);
+            if (!tree.inTree(key))
+                extras.add(key);
+        }
+        if (extras.isEmpty())
+            extras.add("z".repeat(Integer.toString(size + n, 36).length() + 1));
+        return extras.toArray(new String[0]);
+    }
+}
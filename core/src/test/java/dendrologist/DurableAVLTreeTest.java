@@ -0,0 +1,167 @@
+package dendrologist;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests recovery of a DurableAVLTree from its checkpoint and log.
+ *
+ * @see DurableAVLTree
+ */
+class DurableAVLTreeTest {
+    /**
+     * A comparator that rejects one key, standing in for a comparator or
+     * validation failure during an insertion
+     */
+    private static final Comparator<String> REJECTING = (x, y) -> {
+        if (x.equals("poison") || y.equals("poison"))
+            throw new IllegalArgumentException("rejected key");
+        return x.compareTo(y);
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversContentsAfterClose() throws IOException {
+        try (DurableAVLTree<String> tree = open(4, 0)) {
+            for (int i = 0; i < 100; i++)
+                tree.insert(key(i));
+            for (int i = 0; i < 50; i += 2)
+                tree.remove(key(i));
+        }
+        try (DurableAVLTree<String> tree = open(4, 0)) {
+            assertEquals(75, tree.size());
+            assertFalse(tree.inTree(key(0)));
+            assertTrue(tree.inTree(key(1)));
+            assertTrue(tree.inTree(key(99)));
+        }
+    }
+
+    @Test
+    void recoversOnlySyncedRecordsAfterCrash() throws IOException {
+        /* the first tree is abandoned without closing, as in a crash */
+        DurableAVLTree<String> crashed = open(1000, 0);
+        for (int i = 0; i < 10; i++)
+            crashed.insert(key(i));
+        crashed.sync();
+        for (int i = 10; i < 20; i++)
+            crashed.insert(key(i));
+        try (DurableAVLTree<String> tree = open(1000, 0)) {
+            assertEquals(10, tree.size());
+            assertTrue(tree.inTree(key(9)));
+            assertFalse(tree.inTree(key(10)));
+        }
+    }
+
+    @Test
+    void checkpointRotatesLog() throws IOException {
+        try (DurableAVLTree<String> tree = open(1, 10)) {
+            for (int i = 0; i < 25; i++)
+                tree.insert(key(i));
+        }
+        assertArrayEquals(new String[]{"checkpoint", "wal.2"}, files());
+        assertEquals(5 * record(key(0)), Files.size(dir.resolve("wal.2")));
+        try (DurableAVLTree<String> tree = open(1, 10)) {
+            assertEquals(25, tree.size());
+            tree.checkpoint();
+            tree.insert(key(25));
+        }
+        assertArrayEquals(new String[]{"checkpoint", "wal.3"}, files());
+        try (DurableAVLTree<String> tree = open(1, 10)) {
+            assertEquals(26, tree.size());
+        }
+    }
+
+    @Test
+    void truncatesTornTail() throws IOException {
+        try (DurableAVLTree<String> tree = open(1, 0)) {
+            for (int i = 0; i < 5; i++)
+                tree.insert(key(i));
+        }
+        Path wal = dir.resolve("wal.0");
+        long intact = Files.size(wal);
+        /* a record whose element and checksum never reached the disk */
+        Files.write(wal, new byte[]{0, 0, 0, 5, 1, 'k'}, StandardOpenOption.APPEND);
+        try (DurableAVLTree<String> tree = open(1, 0)) {
+            assertEquals(5, tree.size());
+            assertEquals(intact, Files.size(wal));
+            tree.insert(key(5));
+        }
+        try (DurableAVLTree<String> tree = open(1, 0)) {
+            assertEquals(6, tree.size());
+            assertTrue(tree.inTree(key(5)));
+        }
+    }
+
+    @Test
+    void dropsRecordWithBadChecksum() throws IOException {
+        try (DurableAVLTree<String> tree = open(1, 0)) {
+            for (int i = 0; i < 5; i++)
+                tree.insert(key(i));
+        }
+        Path wal = dir.resolve("wal.0");
+        byte[] bytes = Files.readAllBytes(wal);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(wal, bytes);
+        try (DurableAVLTree<String> tree = open(1, 0)) {
+            assertEquals(4, tree.size());
+            assertFalse(tree.inTree(key(4)));
+        }
+    }
+
+    @Test
+    void failedInsertIsNotLogged() throws IOException {
+        try (DurableAVLTree<String> tree = new DurableAVLTree<>(dir, REJECTING, ElementCodec.UTF8, 1, 0)) {
+            tree.insert("apple");
+            assertThrows(IllegalArgumentException.class, () -> tree.insert("poison"));
+            tree.insert("pear");
+        }
+        try (DurableAVLTree<String> tree = new DurableAVLTree<>(dir, REJECTING, ElementCodec.UTF8, 1, 0)) {
+            assertEquals(List.of("apple", "pear"), contents(tree));
+        }
+    }
+
+    /* auxiliary methods */
+
+    private DurableAVLTree<String> open(int groupCommit, long checkpointEvery) throws IOException {
+        return new DurableAVLTree<>(dir, Comparator.naturalOrder(), ElementCodec.UTF8, groupCommit, checkpointEvery);
+    }
+
+    private static String key(int i) {
+        return String.format("k%03d", i);
+    }
+
+    private static long record(String item) {
+        return ElementCodec.UTF8.encode(item).length + 9;
+    }
+
+    private String[] files() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map((p) -> p.getFileName().toString()).sorted().toArray(String[]::new);
+        }
+    }
+
+    private static List<String> contents(DurableAVLTree<String> tree) {
+        List<String> items = new ArrayList<>();
+        tree.traverse((x) -> {
+            items.add((String) x);
+            return null;
+        });
+        return items;
+    }
+}